@@ -0,0 +1,100 @@
+package com.jonathan;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Runs every query of a queries file score at a time over impacts.bin under a range of postings budgets, and
+// prints for each budget the postings scored, the latency, and how much of the exhaustive BM25 top k was
+// found, so a budget can be picked for Search that trades ranking quality for bounded latency.
+public class AnytimeBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int WARM_UP_ROUNDS = 3;
+    private static final long[] BUDGETS = {ScoreAtATime.UNLIMITED, 100000, 30000, 10000, 3000, 1000};
+
+    public static void main(String[] args) throws Exception {
+
+        // Input argument checking
+        if (args.length < 2) {
+            System.out.printf("ERROR: Wrong number of arguments passed in! Expected: 2. Received: %d%n", args.length);
+            System.out.println("First parameter: path to the indexed data");
+            System.out.println("Second parameter: path to the queries file");
+            System.out.println("Optional: --k=N to find the top N documents (default: 10)");
+            System.exit(1);
+        }
+        HashMap<String, String> options = IndexEngine.parseOptions(args, 2, "k");
+        int k = Integer.parseInt(options.getOrDefault("k", "10"));
+
+        BinaryIndex index = BinaryIndex.open(args[0]);
+        ImpactIndex impacts = ImpactIndex.open(args[0], index);
+        if (impacts == null) {
+            System.out.printf("ERROR: %s has no %s. Build it with ImpactIndexWriter%n", args[0], ImpactIndex.FILE_NAME);
+            System.exit(1);
+        }
+        List<List<String>> queries = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(args[1]))) {
+            while (br.readLine() != null) {
+                List<String> queryTokens = new ArrayList<>();
+                IndexEngine.tokenize(br.readLine(), queryTokens, false);
+                queries.add(queryTokens);
+            }
+        }
+
+        List<Set<Integer>> exhaustive = new ArrayList<>();
+        for (List<String> queryTokens : queries) {
+            RankedList ranked = QueryProcessor.EXHAUSTIVE.calculateBM25(queryTokens, index, k, null);
+            Set<Integer> docIDs = new HashSet<>();
+            for (int i = 0; i < ranked.size(); i++) {
+                docIDs.add(ranked.docID(i));
+            }
+            exhaustive.add(docIDs);
+        }
+
+        // Warm up
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            for (List<String> queryTokens : queries) {
+                ScoreAtATime.calculateBM25(queryTokens, index, impacts, k, ScoreAtATime.UNLIMITED, ScoreAtATime.UNLIMITED, null);
+            }
+        }
+
+        System.out.printf("Score at a time, top %d documents, median latency of %d rounds per query%n", k, ROUNDS);
+        System.out.printf("%-10s %12s %10s %10s %10s %10s%n", "budget", "postings", "mean ms", "p95 ms", "p99 ms", "recall");
+        for (long budget : BUDGETS) {
+            long postings = 0;
+            double recall = 0;
+            double[] latencies = new double[queries.size()];
+            for (int q = 0; q < queries.size(); q++) {
+                double[] rounds = new double[ROUNDS];
+                RankedList ranked = null;
+                QueryStats stats = null;
+                for (int round = 0; round < ROUNDS; round++) {
+                    stats = new QueryStats();
+                    long start = System.nanoTime();
+                    ranked = ScoreAtATime.calculateBM25(queries.get(q), index, impacts, k, budget, ScoreAtATime.UNLIMITED, stats);
+                    rounds[round] = (System.nanoTime() - start) / 1e6;
+                }
+                latencies[q] = Benchmarks.median(rounds);
+                postings += stats.postingsScored();
+
+                // Share of the exhaustive top k that was found, counting queries with no results as found
+                Set<Integer> expected = exhaustive.get(q);
+                int found = 0;
+                for (int i = 0; i < ranked.size(); i++) {
+                    if (expected.contains(ranked.docID(i))) {
+                        found++;
+                    }
+                }
+                recall += expected.isEmpty() ? 1 : (double) found / expected.size();
+            }
+            System.out.printf("%-10s %12d %10.3f %10.3f %10.3f %10.3f%n",
+                    budget == ScoreAtATime.UNLIMITED ? "unlimited" : Long.toString(budget), postings,
+                    Arrays.stream(latencies).average().orElse(0), Benchmarks.percentile(latencies, 95), Benchmarks.percentile(latencies, 99),
+                    recall / queries.size());
+        }
+    }
+}
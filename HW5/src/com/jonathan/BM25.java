@@ -5,37 +5,32 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 public class BM25 {
     private static final double K1 = 1.2;
     private static final double B = 0.75;
     private static final double K2 = 7;
 
-    // Source code inspired by: https://stackoverflow.com/questions/109383/sort-a-mapkey-value-by-values
-    public class MapUtil {
-        public static <K, V extends Comparable<? super V>> Map<K, V> sortByValue(Map<K, V> map) {
-            List<Map.Entry<K, V>> list = new ArrayList<>(map.entrySet());
-            list.sort(Map.Entry.comparingByValue());
-            Collections.reverse(list);
-
-            Map<K, V> result = new LinkedHashMap<>();
-            for (Map.Entry<K, V> entry : list) {
-                result.put(entry.getKey(), entry.getValue());
-            }
-
-            return result;
-        }
-    }
+    // Number of ranked documents written for each query
+    private static final int RESULTS = 1000;
 
     public static void main(String[] args) throws Exception {
 
         // Input argument checking
-        if (args.length != 4) {
+        if (args.length < 4) {
             System.out.printf("ERROR: Wrong number of arguments passed in! Expected: 4. Received: %d%n", args.length);
             System.out.println("First parameter: path to the indexed data");
             System.out.println("Second parameter: path to the queries file.");
             System.out.println("Third Parameter: use of porter stemmer. (True/False)");
             System.out.println("Fourth parameter: output directory path to save the results");
+            System.out.println("Optional: --conjunctive to only rank the documents that contain every query term");
+            System.out.println("Optional: --processor=wand|bmw|maxscore|auto|exhaustive to choose how the top documents are found (default: wand)");
+            System.out.println("Optional: --threads=N to run the queries on N threads");
+            System.out.println("Optional: --query-threads=N to split the postings of long queries over N threads");
+            System.out.println("Optional: --postings-cache-mb=N to take decoded postings from a cache of N MB");
+            System.out.println("Optional: --postings-per-task=N to split a query into ranges of about N postings (default: 100000)");
+            System.out.println("Words in double quotes are a phrase, which needs the positions.bin of IndexEngine --positions");
             System.exit(1);
         }
 
@@ -44,6 +39,19 @@ public class BM25 {
         String porterStemmerString = args[2];
         String outputPath = args[3];
         boolean stem = porterStemmerString.equals("True");
+        HashMap<String, String> options = IndexEngine.parseOptions(args, 4, "conjunctive", "processor", "threads", "query-threads", "postings-per-task", "postings-cache-mb");
+        boolean conjunctive = options.containsKey("conjunctive");
+        QueryProcessor processor = QueryProcessor.forName(options.getOrDefault("processor", QueryProcessor.WAND.optionName()));
+        if (processor == null) {
+            System.out.printf("ERROR: Unknown query processor %s%n", options.get("processor"));
+            System.exit(1);
+        }
+        int numThreads = Integer.parseInt(options.getOrDefault("threads", "1"));
+        int queryThreads = Integer.parseInt(options.getOrDefault("query-threads", "1"));
+        long postingsPerTask = Long.parseLong(options.getOrDefault("postings-per-task", Long.toString(ParallelBM25.DEFAULT_POSTINGS_PER_TASK)));
+        ForkJoinPool pool = queryThreads > 1 ? new ForkJoinPool(queryThreads) : null;
+
+        long postingsCacheBytes = Long.parseLong(options.getOrDefault("postings-cache-mb", "0")) * 1024 * 1024;
 
         Path outputDirectory = Paths.get(outputPath);
         if (!Files.exists(outputDirectory)) {
@@ -55,140 +63,208 @@ public class BM25 {
             outputFileName = outputPath + "/hw4-bm25-stem-jhhchen.txt";
         }
 
-        try (FileInputStream lexiconFIS = new FileInputStream(indexedDataPath + "/lexicon.txt");
-             ObjectInputStream lexiconOIS = new ObjectInputStream(lexiconFIS)) {
-            @SuppressWarnings("unchecked")
-            HashMap<String, Integer> lexicon = (HashMap<String, Integer>) lexiconOIS.readObject();
-
-            // Reading in the idMapping
-            try (FileInputStream mappingFIS = new FileInputStream(indexedDataPath + "/idMapping.txt");
-                 ObjectInputStream mappingOIS = new ObjectInputStream(mappingFIS)) {
-                @SuppressWarnings("unchecked")
-                HashMap<Integer, String> idMap = (HashMap<Integer, String>) mappingOIS.readObject();
-
-                // Reading in the inverted index
-                try (FileInputStream invIndexFIS = new FileInputStream(indexedDataPath + "/invIndex.txt");
-                     BufferedInputStream invIndexBIS = new BufferedInputStream(invIndexFIS);
-                     ObjectInputStream invIndexOIS = new ObjectInputStream(invIndexBIS)) {
-                    @SuppressWarnings("unchecked")
-                    HashMap<Integer, List<Integer>> invIndex = (HashMap<Integer, List<Integer>>) invIndexOIS.readObject();
-
-                    // Read in the mapping of docid to document length
-                    try (FileInputStream docLengthFIS = new FileInputStream(indexedDataPath + "/documentLength.txt");
-                         ObjectInputStream docLengthOIS = new ObjectInputStream(docLengthFIS)) {
-                        @SuppressWarnings("unchecked")
-                        HashMap<String, Integer> documentLengthMap = (HashMap<String, Integer>) docLengthOIS.readObject();
-
-                        // Read in the queries
-                        try (BufferedReader br = new BufferedReader(new FileReader(queriesFile))) {
-                            String line;
-
-                            File outFile = new File(outputFileName);
-                            FileOutputStream fos = new FileOutputStream(outFile);
-                            BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos));
-
-                            int totalDocLength = 0;
-                            for (int length : documentLengthMap.values()) {
-                                totalDocLength += length;
-                            }
-                            double avgDocLength = (double) totalDocLength / documentLengthMap.size();
-
-                            // Determining BM25 rankings results
-                            while ((line = br.readLine()) != null) {
-                                String queryId = line;
-                                String queryTerms = br.readLine();
-                                List<String> queryTokens = new ArrayList<>();
-                                IndexEngine.tokenize(queryTerms, queryTokens, stem);
-                                Map<String, Double> bm25Scores = calculateBM25(avgDocLength, queryTokens, lexicon, invIndex, documentLengthMap, idMap);
-
-                                // Writing the results to a file
-                                for (int i = 0; i < bm25Scores.size(); i++) {
-                                    if (i >= 1000) {
-                                        break;
-                                    }
-                                    String docno = (String) bm25Scores.keySet().toArray()[i];
-                                    double score = bm25Scores.get(docno);
-                                    if (stem) {
-                                        bw.write(String.format("%s Q0 %s %d %f jhhchenBM25-stem\n", queryId, docno, i+1, score));
-                                    } else {
-                                        bw.write(String.format("%s Q0 %s %d %f jhhchenBM25-baseline\n", queryId, docno, i+1, score));
-                                    }
-                                }
-                            }
-                            System.out.println("Finished ranking documents. Results can be found at " + outputFileName);
-                            bw.close();
-
-                        } catch (IOException e) {
-                            System.out.println("ERROR: Unable to get queries file");
-                            e.printStackTrace();
-                        }
-                    } catch (Exception e) {
-                        System.out.println("ERROR: Unable to get document length");
-                        e.printStackTrace();
+        // Reading in the index
+        try {
+            BinaryIndex index = BinaryIndex.open(indexedDataPath);
+            PostingsCache postingsCache = postingsCacheBytes > 0 ? new PostingsCache(index, postingsCacheBytes) : null;
+
+            // Read in the queries
+            try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFileName)))) {
+                List<String[]> queries = BatchQueryRunner.readQueries(queriesFile);
+
+                // Quoted phrases are matched from the token positions
+                PositionsIndex positions = PositionsIndex.open(indexedDataPath, index);
+                for (String[] query : queries) {
+                    if (positions == null && PhraseQuery.parse(query[1], stem).hasPhrases()) {
+                        System.out.printf("ERROR: Query %s has a phrase but %s has no %s. Build it with PositionsIndexWriter or IndexEngine --positions%n",
+                                query[0], indexedDataPath, PositionsIndex.FILE_NAME);
+                        System.exit(1);
+                    }
+                }
+                String runTag = stem ? "jhhchenBM25-stem" : "jhhchenBM25-baseline";
+
+                // Determining BM25 rankings results
+                BatchQueryRunner.run(queries, numThreads, (queryId, queryTerms, out) -> {
+                    PhraseQuery query = PhraseQuery.parse(queryTerms, stem);
+                    List<String> queryTokens = query.tokens();
+                    RankedList results;
+                    if (query.hasPhrases()) {
+                        results = query.calculateBM25(index, positions, postingsCache, RESULTS);
+                    } else if (conjunctive) {
+                        results = calculateConjunctiveBM25(queryTokens, index, RESULTS);
+                    } else if (pool != null) {
+                        results = ParallelBM25.calculateBM25(queryTokens, index, RESULTS, pool, postingsPerTask, null);
+                    } else {
+                        results = processor.calculateBM25(queryTokens, index, postingsCache, RESULTS, null);
+                    }
+
+                    // Writing the results to a file
+                    for (int i = 0; i < results.size(); i++) {
+                        String docno = index.docno(results.docID(i));
+                        BatchQueryRunner.appendRunLine(out, queryId, docno, i+1, BatchQueryRunner.formatScore(results.score(i)), runTag);
                     }
-                } catch (Exception e) {
-                    System.out.println("ERROR: Unable to get inverted index");
-                    e.printStackTrace();
+                }, bw);
+                if (postingsCache != null) {
+                    System.out.println("Postings cache: " + postingsCache);
                 }
-            } catch (Exception e) {
-                System.out.println("ERROR: Unable to get docid mapping");
+                System.out.println("Finished ranking documents. Results can be found at " + outputFileName);
+
+            } catch (IOException e) {
+                System.out.println("ERROR: Unable to get queries file");
                 e.printStackTrace();
             }
         } catch (Exception e) {
-            System.out.println("ERROR: Unable to get lexicon");
+            System.out.println("ERROR: Unable to get index");
             e.printStackTrace();
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
         }
     }
 
-    public static Map<String, Double> calculateBM25(double avgDocLength, List<String> queryTokens, HashMap<String, Integer> lexicon,
-                                                    HashMap<Integer, List<Integer>> invIndex, HashMap<String, Integer> documentLengthMap,
-                                                    HashMap<Integer, String> idMap) {
+    // The k best documents for the query, best first. Only the postings of the query terms are read from the index
+    public static RankedList calculateBM25(List<String> queryTokens, BinaryIndex index, int k) {
+        return calculateBM25(queryTokens, index, null, k);
+    }
+
+    // Takes the decoded postings from postingsSource, an InvertedIndex with every postings list loaded or a
+    // PostingsCache, when it is not null. Scores term at a time into an accumulator indexed by docid, and only
+    // the k best documents are put in order
+    public static RankedList calculateBM25(List<String> queryTokens, BinaryIndex index, PostingsSource postingsSource, int k) {
+        return calculateBM25(queryTokens, index, postingsSource, k, null);
+    }
+
+    // Counts the postings and documents scored in stats, if it is not null
+    public static RankedList calculateBM25(List<String> queryTokens, BinaryIndex index, PostingsSource postingsSource, int k, QueryStats stats) {
 
         // N is the total number of docs in collection
-        int N = documentLengthMap.size();
-        HashMap<String, Double> docScore = new HashMap<>();
+        int N = index.numDocuments();
+        double[] lengthNorms = index.bm25LengthNorms();
+        ScoreAccumulator docScore = accumulator(N);
 
         for (String token : queryTokens) {
 
             // qf is the frequency of the word in the query
             int qf = Collections.frequency(queryTokens, token);
-            double queryTf = (K2+1)*qf / (K2 + qf);
-            int tokenId = 0;
+            double queryTf = queryTf(qf);
 
             // Skip if the token is not in the lexicon
-            if (lexicon.containsKey(token)) {
-                tokenId = lexicon.get(token);
-            } else {
+            int tokenId = index.termID(token);
+            if (tokenId < 0) {
                 continue;
             }
 
-            // Postings is in a list with format [docid, count, docid, count, etc.]
-            List<Integer> postings = invIndex.get(tokenId);
-
             // n_i is the number of docs with the token in them
-            int n_i = postings.size() / 2;
-
-            double idf = Math.log((N - n_i + 0.5) / (n_i + 0.5 + 1));
-
-            for (int i = 0; i < postings.size(); i+=2) {
-                String docno = idMap.get(postings.get(i));
-                int docLength = documentLengthMap.get(docno);
-                double K = K1*((1-B) + B*docLength/avgDocLength);
-
-                // f_i is the frequency of the term in the doc
-                int f_i = postings.get(i+1);
-                double docTf = ((K1 + 1) * f_i) / (K + f_i);
-                double score = docTf * queryTf * idf;
-                if (docScore.containsKey(docno)) {
-                    double tempScore = docScore.get(docno) + score;
-                    docScore.replace(docno, tempScore);
-                } else {
-                    docScore.put(docno, score);
+            int n_i = index.documentFrequency(tokenId);
+            if (stats != null) {
+                stats.postingsScored += n_i;
+            }
+
+            double idf = idf(N, n_i);
+
+            if (postingsSource != null) {
+                PostingsList postings = postingsSource.get(tokenId);
+                for (int i = 0; i < postings.size(); i++) {
+                    int docid = postings.getDocID(i);
+                    docScore.add(docid, score(postings.getCount(i), lengthNorms[docid], queryTf, idf));
+                }
+            } else {
+                PostingsIterator postings = index.iterator(tokenId);
+                for (int docid = postings.nextDoc(); docid != PostingsIterator.NO_MORE_DOCS; docid = postings.nextDoc()) {
+                    docScore.add(docid, score(postings.count(), lengthNorms[docid], queryTf, idf));
                 }
             }
+        }
 
+        if (stats != null) {
+            stats.documentsScored += docScore.size();
         }
+        TopK topK = new TopK(k, index::docno);
+        for (int i = 0; i < docScore.size(); i++) {
+            int docid = docScore.docID(i);
+            topK.add(docid, docScore.score(docid));
+        }
+        return topK.ranked();
+    }
+
+    // BM25 of only the documents that contain every query term (ranked AND). The postings are intersected
+    // with a ConjunctionIterator, so the rarest term decides which documents are looked at. The scores are the
+    // same as calculateBM25 gives those documents
+    public static RankedList calculateConjunctiveBM25(List<String> queryTokens, BinaryIndex index, int k) {
+        int N = index.numDocuments();
+        double[] lengthNorms = index.bm25LengthNorms();
+        TopK topK = new TopK(k, index::docno);
+        if (queryTokens.isEmpty()) {
+            return topK.ranked();
+        }
+
+        // A postings iterator and query weights for every query token, in query order
+        PostingsIterator[] iterators = new PostingsIterator[queryTokens.size()];
+        double[] queryTfs = new double[queryTokens.size()];
+        double[] idfs = new double[queryTokens.size()];
+        for (int i = 0; i < queryTokens.size(); i++) {
+            String token = queryTokens.get(i);
+            int tokenId = index.termID(token);
+
+            // No document contains a term that is not in the lexicon
+            if (tokenId < 0) {
+                return topK.ranked();
+            }
+            iterators[i] = index.iterator(tokenId);
+            int qf = Collections.frequency(queryTokens, token);
+            queryTfs[i] = queryTf(qf);
+            int n_i = iterators[i].cost();
+            idfs[i] = idf(N, n_i);
+        }
+
+        ConjunctionIterator conjunction = new ConjunctionIterator(Arrays.asList(iterators));
+        for (int docid = conjunction.nextDoc(); docid != PostingsIterator.NO_MORE_DOCS; docid = conjunction.nextDoc()) {
+            double score = 0;
+            for (int i = 0; i < iterators.length; i++) {
+                score += score(iterators[i].count(), lengthNorms[docid], queryTfs[i], idfs[i]);
+            }
+            topK.add(docid, score);
+        }
+
+        return topK.ranked();
+    }
 
-        return MapUtil.sortByValue(docScore);
+    // qf is the frequency of the token in the query
+    static double queryTf(int qf) {
+        return (K2+1)*qf / (K2 + qf);
+    }
+
+    // n_i is the number of docs with the token in them
+    static double idf(int N, int n_i) {
+        return Math.log((N - n_i + 0.5) / (n_i + 0.5 + 1));
+    }
+
+    // K of a document of docLength terms
+    static double lengthNorm(int docLength, double avgDocLength) {
+        return K1*((1-B) + B*docLength/avgDocLength);
+    }
+
+    // The part of the score of a document given by one query token. f_i is the frequency of the term in the doc
+    // and K the length norm of the doc
+    static double score(int f_i, double K, double queryTf, double idf) {
+        return docTf(f_i, K) * queryTf * idf;
+    }
+
+    static double docTf(int f_i, double K) {
+        return ((K1 + 1) * f_i) / (K + f_i);
+    }
+
+    // The accumulator of the calling thread, cleared of the last query, so one is not allocated for every query
+    private static final ThreadLocal<ScoreAccumulator> accumulators = new ThreadLocal<>();
+
+    static ScoreAccumulator accumulator(int numDocuments) {
+        ScoreAccumulator accumulator = accumulators.get();
+        if (accumulator == null || accumulator.capacity() != numDocuments) {
+            accumulator = new ScoreAccumulator(numDocuments);
+            accumulators.set(accumulator);
+        }
+        accumulator.clear();
+        return accumulator;
     }
 }
@@ -0,0 +1,119 @@
+package com.jonathan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// The distinct terms of a query for the document at a time query processors, each with an iterator over its
+// postings, its BM25 query weights, and an upper bound on what it can add to the score of a document. The
+// postings are taken from a PostingsSource when there is one, and decoded from index.bin otherwise.
+// Documents are scored one query token at a time in query order, adding up exactly what calculateBM25 adds
+// up, so every processor gives the same scores.
+public class BM25Query {
+    // Slack on the upper bounds, for the rounding of adding them up in another order than the scores
+    private static final double UPPER_BOUND_SLACK = 1e-9;
+
+    private final PostingsIterator[] postings;
+    private final int[] qfs;
+    private final double[] queryTfs;
+    private final double[] idfs;
+    private final double[] upperBounds;
+
+    // What a term adds to a score at most per unit of BM25 tf
+    private final double[] boundFactors;
+
+    // Distinct term of every query token, or -1 for tokens that are not in the lexicon
+    private final int[] tokenTerms;
+
+    private final double[] lengthNorms;
+
+    public BM25Query(List<String> queryTokens, BinaryIndex index, PostingsSource postingsSource) {
+        int N = index.numDocuments();
+        lengthNorms = index.bm25LengthNorms();
+        tokenTerms = new int[queryTokens.size()];
+
+        List<String> distinct = new ArrayList<>();
+        List<Integer> termIDs = new ArrayList<>();
+        for (int i = 0; i < queryTokens.size(); i++) {
+            String token = queryTokens.get(i);
+            int termID = index.termID(token);
+            if (termID < 0) {
+                tokenTerms[i] = -1;
+                continue;
+            }
+            int term = distinct.indexOf(token);
+            if (term < 0) {
+                term = distinct.size();
+                distinct.add(token);
+                termIDs.add(termID);
+            }
+            tokenTerms[i] = term;
+        }
+
+        int numTerms = distinct.size();
+        postings = new PostingsIterator[numTerms];
+        qfs = new int[numTerms];
+        queryTfs = new double[numTerms];
+        idfs = new double[numTerms];
+        upperBounds = new double[numTerms];
+        boundFactors = new double[numTerms];
+        for (int term = 0; term < numTerms; term++) {
+            int termID = termIDs.get(term);
+            postings[term] = index.iterator(termID, postingsSource);
+
+            // Same weights as calculateBM25
+            int qf = Collections.frequency(queryTokens, distinct.get(term));
+            qfs[term] = qf;
+            queryTfs[term] = BM25.queryTf(qf);
+            idfs[term] = BM25.idf(N, postings[term].cost());
+
+            // A term with a negative idf can only lower a score
+            boundFactors[term] = idfs[term] > 0 ? qf * queryTfs[term] * idfs[term] * (1 + UPPER_BOUND_SLACK) : 0;
+            upperBounds[term] = boundFactors[term] * index.bm25MaxDocTf(termID);
+        }
+    }
+
+    public int numTerms() {
+        return postings.length;
+    }
+
+    public PostingsIterator postings(int term) {
+        return postings[term];
+    }
+
+    // The most the term can add to the score of any document
+    public double upperBound(int term) {
+        return upperBounds[term];
+    }
+
+    // The most the term can add to the score of a document in the block found by the last advanceShallow() of
+    // its postings
+    public double blockUpperBound(int term) {
+        return boundFactors[term] * postings[term].blockMaxDocTf();
+    }
+
+    // What the term adds to the score of the document its iterator is on, for every token of it in the query.
+    // Can differ from what it adds in score() by rounding, so is only good for deciding what to score
+    public double termScore(int term) {
+        int docID = postings[term].docID();
+        return qfs[term] * BM25.score(postings[term].count(), lengthNorms[docID], queryTfs[term], idfs[term]);
+    }
+
+    // Score of a document from the terms whose iterators are on it. Every iterator of a term in the document
+    // must be on it
+    public double score(int docID, QueryStats stats) {
+        double score = 0;
+        for (int term : tokenTerms) {
+            if (term >= 0 && postings[term].docID() == docID) {
+                score += BM25.score(postings[term].count(), lengthNorms[docID], queryTfs[term], idfs[term]);
+                if (stats != null) {
+                    stats.postingsScored++;
+                }
+            }
+        }
+        if (stats != null) {
+            stats.documentsScored++;
+        }
+        return score;
+    }
+}
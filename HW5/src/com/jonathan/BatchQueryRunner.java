@@ -0,0 +1,107 @@
+package com.jonathan;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs the queries of a queries file for BM25 and BooleanAND, one after the other or on a pool of threads.
+// The index is only read while querying, so every thread shares it. The run file lines of each query are
+// written in the order of the queries file whatever order the queries finish in, so the output does not
+// depend on the number of threads, and the wall time and percentiles of the query latencies are printed.
+public class BatchQueryRunner {
+
+    // Appends the run file lines of one query to out
+    public interface QueryTask {
+        void run(String queryId, String queryTerms, StringBuilder out) throws Exception;
+    }
+
+    // The [query id, query terms] pairs of a queries file
+    public static List<String[]> readQueries(String queriesFile) throws IOException {
+        List<String[]> queries = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(queriesFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                queries.add(new String[] {line, br.readLine()});
+            }
+        }
+        return queries;
+    }
+
+    public static void run(List<String[]> queries, int numThreads, QueryTask task, Writer out) throws Exception {
+        long start = System.nanoTime();
+        double[] latencies = new double[queries.size()];
+        if (numThreads <= 1) {
+            StringBuilder lines = new StringBuilder();
+            for (int q = 0; q < queries.size(); q++) {
+                long queryStart = System.nanoTime();
+                lines.setLength(0);
+                task.run(queries.get(q)[0], queries.get(q)[1], lines);
+                latencies[q] = (System.nanoTime() - queryStart) / 1e6;
+                out.append(lines);
+            }
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+            try {
+                List<Future<StringBuilder>> results = new ArrayList<>();
+                for (int q = 0; q < queries.size(); q++) {
+                    final int query = q;
+                    results.add(pool.submit(() -> {
+                        long queryStart = System.nanoTime();
+                        StringBuilder lines = new StringBuilder();
+                        task.run(queries.get(query)[0], queries.get(query)[1], lines);
+                        latencies[query] = (System.nanoTime() - queryStart) / 1e6;
+                        return lines;
+                    }));
+                }
+
+                // Written in query order as soon as every earlier query is done
+                for (Future<StringBuilder> result : results) {
+                    out.append(result.get());
+                }
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        out.flush();
+
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+        Arrays.sort(latencies);
+        System.out.printf("Ran %d queries on %d thread%s in %.3f seconds. Query latency p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                queries.size(), Math.max(numThreads, 1), numThreads > 1 ? "s" : "", wallSeconds,
+                Benchmarks.percentile(latencies, 50), Benchmarks.percentile(latencies, 90), Benchmarks.percentile(latencies, 99),
+                latencies.length == 0 ? 0 : latencies[latencies.length - 1]);
+    }
+
+    // Appends a run file line. The same as String.format("%s Q0 %s %d %s %s\n", ...)
+    public static void appendRunLine(StringBuilder out, String queryId, String docno, int rank, String score, String runTag) {
+        out.append(queryId).append(" Q0 ").append(docno).append(' ').append(rank).append(' ')
+                .append(score).append(' ').append(runTag).append('\n');
+    }
+
+    // The same as String.format("%f", score), which rounds the shortest decimal that represents the double half
+    // up to six places, without the cost of a Formatter
+    public static String formatScore(double score) {
+        if (Double.isNaN(score) || Double.isInfinite(score)) {
+            return String.format("%f", score);
+        }
+        BigDecimal rounded = BigDecimal.valueOf(score).setScale(6, RoundingMode.HALF_UP);
+
+        // Negative scores that round to zero keep their sign, as does -0.0
+        if (rounded.signum() == 0 && (score < 0 || 1 / score < 0)) {
+            return "-" + rounded.toPlainString();
+        }
+        return rounded.toPlainString();
+    }
+}
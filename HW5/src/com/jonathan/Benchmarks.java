@@ -0,0 +1,40 @@
+package com.jonathan;
+
+import java.util.Arrays;
+
+// Statistics and a JIT guard shared by the benchmarks
+final class Benchmarks {
+
+    // Keeps the JIT from dropping the work whose result is otherwise unused
+    private static double sink;
+
+    private Benchmarks() {
+    }
+
+    static void consume(double value) {
+        sink += value;
+    }
+
+    // Consumes the best score of a ranking
+    static void consume(RankedList ranked) {
+        consume(ranked.size() > 0 ? ranked.score(0) : 0);
+    }
+
+    // Nearest rank percentile, or 0 if there are no values
+    static double percentile(double[] values, int percentile) {
+        if (values.length == 0) {
+            return 0;
+        }
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    // Upper median, or 0 if there are no values
+    static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted.length == 0 ? 0 : sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,260 @@
+package com.jonathan;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+// Reader for index.bin, the versioned binary replacement for the serialized lexicon, id mapping, document
+// length and postings files. The file is memory mapped and nothing is decoded up front except the document
+// lengths, so opening an index takes milliseconds whatever the size of the collection.
+//
+// Layout, all ints and longs big endian:
+//   header      [magic, version, number of documents, number of terms, total document length (long),
+//                offsets (long) of the document lengths, docnos, postings and dictionary sections, file length (long)]
+//   lengths     [length of every document in internal id order]
+//   docnos      [byte offset of every docno, one past the last] [UTF-8 docnos]
+//   postings    [docid gap, count] pairs of every term as variable byte codes, in blocks of SKIP_BLOCK_SIZE
+//               postings. Terms with more than one block start with a skip table of [byte offset, last docid,
+//               max BM25 tf (float)] for every block, which PostingsIterator uses to jump over blocks, and
+//               Block-Max WAND to jump over blocks that cannot score high enough
+//   dictionary  [term byte offset, document frequency, postings offset (long), postings bytes, max BM25 tf
+//               (float)] per term in unsigned UTF-8 order, then one entry holding the end of the term bytes, then
+//               the UTF-8 terms. The max BM25 tf is the largest term frequency part of BM25 over the postings of
+//               the term, which bounds what the term can add to a score for WAND
+// Term ids of a BinaryIndex are positions in the sorted dictionary, not the ids IndexEngine assigned.
+public class BinaryIndex {
+    public static final String FILE_NAME = "index.bin";
+
+    static final int MAGIC = 0x4A494458;
+    static final int VERSION = 4;
+    static final int HEADER_SIZE = 64;
+    static final int DICTIONARY_ENTRY_SIZE = 24;
+    static final int SKIP_BLOCK_SIZE = 128;
+    static final int SKIP_ENTRY_SIZE = 12;
+
+    private final MappedByteBuffer buffer;
+    private final int numDocuments;
+    private final int numTerms;
+    private final long totalDocLength;
+    private final int[] documentLengths;
+    private final int docnoOffsets;
+    private final int docnoBytes;
+    private final int postings;
+    private final int dictionary;
+    private final int termBytes;
+
+    // Decoded the first time each one is asked for
+    private final String[] docnos;
+    private HashMap<String, Integer> docnoToId = null;
+    private double[] bm25LengthNorms = null;
+
+    private BinaryIndex(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(String.format("%s is too large to map", file));
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(String.format("%s is not an index file", file));
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(String.format("%s is version %d of the index format but version %d is expected. Build the index again with IndexEngine",
+                    file, buffer.getInt(4), VERSION));
+        }
+        if (buffer.getLong(56) != buffer.capacity()) {
+            throw new IOException(String.format("%s is truncated", file));
+        }
+
+        numDocuments = buffer.getInt(8);
+        numTerms = buffer.getInt(12);
+        totalDocLength = buffer.getLong(16);
+        docnoOffsets = (int) buffer.getLong(32);
+        docnoBytes = docnoOffsets + 4 * (numDocuments + 1);
+        postings = (int) buffer.getLong(40);
+        dictionary = (int) buffer.getLong(48);
+        termBytes = dictionary + DICTIONARY_ENTRY_SIZE * (numTerms + 1);
+
+        documentLengths = new int[numDocuments];
+        buffer.duplicate().position((int) buffer.getLong(24)).asIntBuffer().get(documentLengths);
+        docnos = new String[numDocuments];
+    }
+
+    // Open the index.bin of the indexed data
+    public static BinaryIndex open(String indexedDataPath) throws IOException {
+        Path file = Paths.get(indexedDataPath, FILE_NAME);
+        if (!Files.exists(file)) {
+            throw new IOException(String.format("%s does not exist. Indexes built by earlier versions can be converted with IndexConverter", file));
+        }
+        return new BinaryIndex(file);
+    }
+
+    public int numDocuments() {
+        return numDocuments;
+    }
+
+    public int numTerms() {
+        return numTerms;
+    }
+
+    public long totalDocLength() {
+        return totalDocLength;
+    }
+
+    public double averageDocLength() {
+        return (double) totalDocLength / numDocuments;
+    }
+
+    public int documentLength(int id) {
+        return documentLengths[id];
+    }
+
+    // Lengths of all documents indexed by internal id. Must not be modified
+    public int[] documentLengths() {
+        return documentLengths;
+    }
+
+    // The K of BM25 for every document, indexed by internal id. Must not be modified
+    public synchronized double[] bm25LengthNorms() {
+        if (bm25LengthNorms == null) {
+            double avgDocLength = averageDocLength();
+            bm25LengthNorms = new double[numDocuments];
+            for (int id = 0; id < numDocuments; id++) {
+                bm25LengthNorms[id] = BM25.lengthNorm(documentLengths[id], avgDocLength);
+            }
+        }
+        return bm25LengthNorms;
+    }
+
+    public String docno(int id) {
+        String docno = docnos[id];
+        if (docno == null) {
+            int start = buffer.getInt(docnoOffsets + 4 * id);
+            int end = buffer.getInt(docnoOffsets + 4 * (id + 1));
+            docno = decode(docnoBytes + start, end - start);
+            docnos[id] = docno;
+        }
+        return docno;
+    }
+
+    // Internal id of a docno, or -1 if there is no such document
+    public synchronized int docID(String docno) {
+        if (docnoToId == null) {
+            docnoToId = new HashMap<>(numDocuments * 2);
+            for (int id = 0; id < numDocuments; id++) {
+                docnoToId.put(docno(id), id);
+            }
+        }
+        Integer id = docnoToId.get(docno);
+        return id == null ? -1 : id;
+    }
+
+    // Term id of a term, or -1 if it is not in the dictionary
+    public int termID(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = numTerms - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareTerm(mid, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public String term(int termID) {
+        int start = termStart(termID);
+        return decode(termBytes + start, termStart(termID + 1) - start);
+    }
+
+    // Number of documents that contain the term
+    public int documentFrequency(int termID) {
+        return buffer.getInt(entry(termID) + 4);
+    }
+
+    // At least the largest term frequency part of BM25 of any posting of the term, see BM25.docTf
+    public double bm25MaxDocTf(int termID) {
+        return buffer.getFloat(entry(termID) + 20);
+    }
+
+    // Iterator over the postings of a term, decoded as it moves through them
+    public PostingsIterator iterator(int termID) {
+        int entry = entry(termID);
+        int df = buffer.getInt(entry + 4);
+        return new PostingsIterator(buffer, postings + (int) buffer.getLong(entry + 8), df, bm25MaxDocTf(termID), null);
+    }
+
+    // Iterator over the postings of a term taken from postingsSource, decoded from index.bin if it is null.
+    // Either way it jumps between blocks and bounds them with the skip table of the term
+    public PostingsIterator iterator(int termID, PostingsSource postingsSource) {
+        if (postingsSource == null) {
+            return iterator(termID);
+        }
+        int entry = entry(termID);
+        int df = buffer.getInt(entry + 4);
+        return new PostingsIterator(buffer, postings + (int) buffer.getLong(entry + 8), df, bm25MaxDocTf(termID), postingsSource.get(termID));
+    }
+
+    // Decode the postings of a term
+    public PostingsList postings(int termID) {
+        PostingsIterator iterator = iterator(termID);
+        int[] ints = new int[2 * iterator.cost()];
+        for (int i = 0; i < ints.length; i += 2) {
+            ints[i] = iterator.nextDoc();
+            ints[i + 1] = iterator.count();
+        }
+        return new PostingsList(ints, ints.length);
+    }
+
+    // Decode the postings of every term into memory
+    public InvertedIndex readInvertedIndex() {
+        InvertedIndex invIndex = new InvertedIndex(numTerms);
+        for (int termID = 0; termID < numTerms; termID++) {
+            invIndex.put(termID, postings(termID));
+        }
+        return invIndex;
+    }
+
+    private int entry(int termID) {
+        if (termID < 0 || termID >= numTerms) {
+            throw new IllegalArgumentException(String.format("No term with id %d", termID));
+        }
+        return dictionary + DICTIONARY_ENTRY_SIZE * termID;
+    }
+
+    private int termStart(int termID) {
+        return buffer.getInt(dictionary + DICTIONARY_ENTRY_SIZE * termID);
+    }
+
+    // Compare the bytes of a dictionary term to the key as unsigned bytes
+    private int compareTerm(int termID, byte[] key) {
+        int start = termBytes + termStart(termID);
+        int length = termStart(termID + 1) - termStart(termID);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(buffer.get(start + i) & 0xFF, key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private String decode(int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
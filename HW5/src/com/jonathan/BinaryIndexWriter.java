@@ -0,0 +1,192 @@
+package com.jonathan;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.jonathan.BinaryIndex.*;
+
+// Writes the index.bin read by BinaryIndex. The document sections are written up front, then postings are
+// added one term at a time in any order, so a postings file can be streamed through without loading it, and
+// the sorted term dictionary and the header are written last.
+public class BinaryIndexWriter implements PostingsFile.PostingsConsumer {
+    private final FileOutputStream fos;
+    private final DataOutputStream dos;
+    private long position = 0;
+
+    private final int numDocuments;
+    private long totalDocLength = 0;
+    private final long docLengthsOffset;
+    private final long docnosOffset;
+    private final long postingsOffset;
+
+    // Where the postings of each term id were written
+    private long[] termPostingsOffsets = new long[1024];
+    private int[] termPostingsLengths = new int[1024];
+    private int[] termDocFrequencies = new int[1024];
+    private float[] termMaxDocTfs = new float[1024];
+    private byte[] encoded = new byte[1024];
+
+    // The K of BM25 of every document, for the max BM25 tf of each term
+    private final double[] lengthNorms;
+
+    // The docno and length of every document, indexed by internal id
+    public BinaryIndexWriter(String outputFile, List<String> docnos, int[] documentLengths) throws IOException {
+        this.fos = new FileOutputStream(outputFile);
+        this.dos = new DataOutputStream(new BufferedOutputStream(fos, PostingsFile.BUFFER_SIZE));
+        this.numDocuments = docnos.size();
+
+        // Filled in by close()
+        dos.write(new byte[HEADER_SIZE]);
+        position += HEADER_SIZE;
+
+        docLengthsOffset = position;
+        for (int id = 0; id < numDocuments; id++) {
+            dos.writeInt(documentLengths[id]);
+            totalDocLength += documentLengths[id];
+        }
+        position += 4L * numDocuments;
+
+        lengthNorms = new double[numDocuments];
+        for (int id = 0; id < numDocuments; id++) {
+            lengthNorms[id] = BM25.lengthNorm(documentLengths[id], (double) totalDocLength / numDocuments);
+        }
+
+        // [byte offset of every docno, then one past the last] followed by the UTF-8 docnos
+        docnosOffset = position;
+        byte[][] docnoBytes = new byte[numDocuments][];
+        int offset = 0;
+        for (int id = 0; id < numDocuments; id++) {
+            docnoBytes[id] = docnos.get(id).getBytes(StandardCharsets.UTF_8);
+            dos.writeInt(offset);
+            offset += docnoBytes[id].length;
+        }
+        dos.writeInt(offset);
+        for (byte[] bytes : docnoBytes) {
+            dos.write(bytes);
+        }
+        position += 4L * (numDocuments + 1) + offset;
+
+        postingsOffset = position;
+    }
+
+    // Add the postings of a term, as docid gaps and counts in variable byte codes. Terms with more than one
+    // block of postings start with a skip table of [byte offset, last docid, max BM25 tf] for each block
+    @Override
+    public void accept(int termID, PostingsList postings) throws IOException {
+        if (termID >= termPostingsOffsets.length) {
+            int capacity = Math.max(termID + 1, termPostingsOffsets.length * 2);
+            termPostingsOffsets = Arrays.copyOf(termPostingsOffsets, capacity);
+            termPostingsLengths = Arrays.copyOf(termPostingsLengths, capacity);
+            termDocFrequencies = Arrays.copyOf(termDocFrequencies, capacity);
+            termMaxDocTfs = Arrays.copyOf(termMaxDocTfs, capacity);
+        }
+
+        int numBlocks = (postings.size() + SKIP_BLOCK_SIZE - 1) / SKIP_BLOCK_SIZE;
+        int skipTableLength = numBlocks > 1 ? SKIP_ENTRY_SIZE * numBlocks : 0;
+        int length = 0;
+        int previousDocID = 0;
+        double maxDocTf = 0;
+        double blockMaxDocTf = 0;
+        for (int i = 0; i < postings.size(); i++) {
+            if (encoded.length - length < 10) {
+                encoded = Arrays.copyOf(encoded, encoded.length * 2);
+            }
+            if (skipTableLength > 0 && i % SKIP_BLOCK_SIZE == 0) {
+                if (i > 0) {
+                    dos.writeInt(previousDocID);
+                    dos.writeFloat(roundUp(blockMaxDocTf));
+                    blockMaxDocTf = 0;
+                }
+                dos.writeInt(length);
+            }
+            int docID = postings.getDocID(i);
+            length = writeVByte(encoded, length, docID - previousDocID);
+            length = writeVByte(encoded, length, postings.getCount(i));
+            previousDocID = docID;
+            blockMaxDocTf = Math.max(blockMaxDocTf, BM25.docTf(postings.getCount(i), lengthNorms[docID]));
+            maxDocTf = Math.max(maxDocTf, blockMaxDocTf);
+        }
+        if (skipTableLength > 0) {
+            dos.writeInt(previousDocID);
+            dos.writeFloat(roundUp(blockMaxDocTf));
+        }
+        dos.write(encoded, 0, length);
+
+        termPostingsOffsets[termID] = position - postingsOffset;
+        termPostingsLengths[termID] = skipTableLength + length;
+        termDocFrequencies[termID] = postings.size();
+        termMaxDocTfs[termID] = roundUp(maxDocTf);
+        position += skipTableLength + length;
+    }
+
+    // Write the term dictionary and the header. terms holds the term of every term id that was added
+    public void close(List<String> terms) throws IOException {
+        int numTerms = terms.size();
+        byte[][] termBytes = new byte[numTerms][];
+        Integer[] order = new Integer[numTerms];
+        for (int termID = 0; termID < numTerms; termID++) {
+            termBytes[termID] = terms.get(termID).getBytes(StandardCharsets.UTF_8);
+            order[termID] = termID;
+        }
+        Arrays.sort(order, (lhs, rhs) -> Arrays.compareUnsigned(termBytes[lhs], termBytes[rhs]));
+
+        // An entry per term in sorted order, then an entry holding the end of the term bytes
+        long dictionaryOffset = position;
+        int termOffset = 0;
+        for (int termID : order) {
+            dos.writeInt(termOffset);
+            dos.writeInt(termID < termDocFrequencies.length ? termDocFrequencies[termID] : 0);
+            dos.writeLong(termID < termPostingsOffsets.length ? termPostingsOffsets[termID] : 0);
+            dos.writeInt(termID < termPostingsLengths.length ? termPostingsLengths[termID] : 0);
+            dos.writeFloat(termID < termMaxDocTfs.length ? termMaxDocTfs[termID] : 0);
+            termOffset += termBytes[termID].length;
+        }
+        dos.writeInt(termOffset);
+        dos.writeInt(0);
+        dos.writeLong(0);
+        dos.writeInt(0);
+        dos.writeFloat(0);
+        for (int termID : order) {
+            dos.write(termBytes[termID]);
+        }
+        position += (long) DICTIONARY_ENTRY_SIZE * (numTerms + 1) + termOffset;
+        dos.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(numDocuments);
+        header.putInt(numTerms);
+        header.putLong(totalDocLength);
+        header.putLong(docLengthsOffset);
+        header.putLong(docnosOffset);
+        header.putLong(postingsOffset);
+        header.putLong(dictionaryOffset);
+        header.putLong(position);
+        header.flip();
+        fos.getChannel().write(header, 0);
+        dos.close();
+    }
+
+    // The nearest float that is not less than value, so it is still an upper bound
+    private static float roundUp(double value) {
+        float rounded = (float) value;
+        return rounded < value ? Math.nextUp(rounded) : rounded;
+    }
+
+    // Seven bits per byte, lowest bits first, with the high bit set on every byte but the last
+    static int writeVByte(byte[] buffer, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+}
@@ -0,0 +1,85 @@
+package com.jonathan;
+
+import java.util.List;
+
+import static com.jonathan.PostingsIterator.NO_MORE_DOCS;
+
+// Document at a time BM25 with Block-Max WAND (Ding and Suel, 2011). The pivot is found as in Wand from the
+// upper bound of each term over all of its postings. Then the bounds of just the blocks that hold the pivot
+// document are added up from the skip tables, and if even those cannot reach the lowest score kept, no
+// document up to the end of the first of those blocks can either, so every iterator up to the pivot jumps
+// past it without decoding the postings in between. Gives the same top k as calculateBM25.
+public class BlockMaxWand {
+    public static RankedList calculateBM25(List<String> queryTokens, BinaryIndex index, PostingsSource postingsSource, int k, QueryStats stats) {
+        BM25Query query = new BM25Query(queryTokens, index, postingsSource);
+        TopK topK = new TopK(k, index::docno);
+        int numTerms = query.numTerms();
+
+        // Terms in order of the docid their iterator is on
+        int[] order = new int[numTerms];
+        for (int term = 0; term < numTerms; term++) {
+            query.postings(term).nextDoc();
+            order[term] = term;
+        }
+
+        while (true) {
+            Wand.sortByDocID(query, order);
+            double threshold = topK.isFull() ? topK.minScore() : Double.NEGATIVE_INFINITY;
+
+            // Find the pivot
+            int pivot = -1;
+            double bound = 0;
+            for (int i = 0; i < numTerms && query.postings(order[i]).docID() != NO_MORE_DOCS; i++) {
+                bound += query.upperBound(order[i]);
+                if (bound >= threshold) {
+                    pivot = i;
+                    break;
+                }
+            }
+            if (pivot < 0) {
+                break;
+            }
+            int pivotDoc = query.postings(order[pivot]).docID();
+
+            // Every term that is on the pivot document counts towards its bound
+            while (pivot + 1 < numTerms && query.postings(order[pivot + 1]).docID() == pivotDoc) {
+                pivot++;
+            }
+
+            // Bound of the blocks the pivot document would be in, and the first docid after one of them ends
+            double blockBound = 0;
+            long next = NO_MORE_DOCS;
+            for (int i = 0; i <= pivot; i++) {
+                int term = order[i];
+                next = Math.min(next, (long) query.postings(term).advanceShallow(pivotDoc) + 1);
+                blockBound += query.blockUpperBound(term);
+            }
+
+            if (blockBound >= threshold) {
+                if (query.postings(order[0]).docID() == pivotDoc) {
+                    // Every iterator up to the pivot is on the pivot document, so it can be scored
+                    topK.add(pivotDoc, query.score(pivotDoc, stats));
+                    for (int i = 0; i <= pivot; i++) {
+                        query.postings(order[i]).nextDoc();
+                    }
+                } else {
+                    // None of the documents before the pivot document can make the top k
+                    for (int i = 0; i < pivot && query.postings(order[i]).docID() < pivotDoc; i++) {
+                        query.postings(order[i]).advance(pivotDoc);
+                    }
+                }
+            } else {
+                // No document from the pivot document up to the end of the shortest of its blocks can make the
+                // top k, unless it has a term after the pivot
+                if (pivot + 1 < numTerms) {
+                    next = Math.min(next, query.postings(order[pivot + 1]).docID());
+                }
+                int target = (int) Math.max(next, pivotDoc + 1);
+                for (int i = 0; i <= pivot; i++) {
+                    query.postings(order[i]).advance(target);
+                }
+            }
+        }
+        return topK.ranked();
+    }
+}
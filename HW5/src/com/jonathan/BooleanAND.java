@@ -5,6 +5,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 
@@ -12,17 +13,22 @@ public class BooleanAND {
     public static void main(String[] args) {
 
         // Input argument checking
-        if (args.length != 3) {
+        if (args.length < 3) {
             System.out.println(String.format("ERROR: Wrong number of arguments passed in! Expected: 3. Received: %d", args.length));
             System.out.println("First parameter: path to the indexed data");
             System.out.println("Second parameter: the queries file");
             System.out.println("Third parameter: output file name");
+            System.out.println("Optional: --threads=N to run the queries on N threads");
+            System.out.println("Optional: --postings-cache-mb=N to intersect decoded postings kept in a cache of N MB");
             System.exit(1);
         }
 
         String indexedDataPath = args[0];
         String queriesFile = args[1];
         String outputFile = args[2];
+        HashMap<String, String> options = IndexEngine.parseOptions(args, 3, "threads", "postings-cache-mb");
+        int numThreads = Integer.parseInt(options.getOrDefault("threads", "1"));
+        long postingsCacheBytes = Long.parseLong(options.getOrDefault("postings-cache-mb", "0")) * 1024 * 1024;
 
         Path outputFilePath = Paths.get(outputFile);
         if (Files.exists(outputFilePath)) {
@@ -30,96 +36,134 @@ public class BooleanAND {
             System.exit(1);
         }
 
-        // Reading in the lexicon
-        try (FileInputStream lexiconFIS = new FileInputStream(indexedDataPath + "/lexicon.txt");
-             ObjectInputStream lexiconOIS = new ObjectInputStream(lexiconFIS)) {
-            @SuppressWarnings("unchecked")
-            HashMap<String, Integer> lexicon = (HashMap<String, Integer>) lexiconOIS.readObject();
-
-            // Reading in the idMapping
-            try (FileInputStream mappingFIS = new FileInputStream(indexedDataPath + "/idMapping.txt");
-                 ObjectInputStream mappingOIS = new ObjectInputStream(mappingFIS)) {
-                @SuppressWarnings("unchecked")
-                HashMap<Integer, String> idMap = (HashMap<Integer, String>) mappingOIS.readObject();
-
-                // Reading in the inverted index
-                try (FileInputStream invIndexFIS = new FileInputStream(indexedDataPath + "/invIndex.txt");
-                     BufferedInputStream invIndexBIS = new BufferedInputStream(invIndexFIS);
-                     ObjectInputStream invIndexOIS = new ObjectInputStream(invIndexBIS)) {
-                    @SuppressWarnings("unchecked")
-                    HashMap<Integer, List<Integer>> invIndex = (HashMap<Integer, List<Integer>>) invIndexOIS.readObject();
-
-                    // Reading in the queries
-                    try (BufferedReader br = new BufferedReader(new FileReader(queriesFile))) {
-                        String line;
-
-                        File outFile = new File(outputFile);
-                        FileOutputStream fos = new FileOutputStream(outFile);
-                        BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos));
-
-                        // Determining booleanAND results
-                        while ((line = br.readLine()) != null) {
-                            String queryId = line;
-                            String queryTerms = br.readLine();
-                            List<String> queryTokens = new ArrayList<>();
-                            IndexEngine.tokenize(queryTerms, queryTokens, false);
-                            List<Integer> booleanANDResults = booleanANDResults(queryTokens, lexicon, invIndex);
-                            int rank = 1;
-                            for (int i = 0; i < booleanANDResults.size(); i++) {
-                                String docno = idMap.get(booleanANDResults.get(i));
-                                int score = booleanANDResults.size() - rank;
-                                bw.write(String.format("%s Q0 %s %d %d jhhchenAND\n", queryId, docno, rank, score));
-                                rank++;
-                            }
-                        }
-                        bw.close();
-
-                    } catch (IOException e) {
-                        System.out.println("ERROR: Unable to get queries file");
-                        e.printStackTrace();
+        // Reading in the index
+        try {
+            BinaryIndex index = BinaryIndex.open(indexedDataPath);
+            PostingsCache postingsCache = postingsCacheBytes > 0 ? new PostingsCache(index, postingsCacheBytes) : null;
+
+            // Reading in the queries
+            try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile)))) {
+                List<String[]> queries = BatchQueryRunner.readQueries(queriesFile);
+
+                // Determining booleanAND results
+                BatchQueryRunner.run(queries, numThreads, (queryId, queryTerms, out) -> {
+                    List<String> queryTokens = new ArrayList<>();
+                    IndexEngine.tokenize(queryTerms, queryTokens, false);
+                    List<Integer> booleanANDResults = postingsCache != null
+                            ? booleanANDResults(queryTokens, index, postingsCache)
+                            : booleanANDResults(queryTokens, index);
+                    int rank = 1;
+                    for (int i = 0; i < booleanANDResults.size(); i++) {
+                        String docno = index.docno(booleanANDResults.get(i));
+                        int score = booleanANDResults.size() - rank;
+                        BatchQueryRunner.appendRunLine(out, queryId, docno, rank, Integer.toString(score), "jhhchenAND");
+                        rank++;
                     }
-                } catch (Exception e) {
-                    System.out.println("ERROR: Unable to get inverted index");
-                    e.printStackTrace();
+                }, bw);
+                if (postingsCache != null) {
+                    System.out.println("Postings cache: " + postingsCache);
                 }
-            } catch (Exception e) {
-                System.out.println("ERROR: Unable to get docid mapping");
+
+            } catch (IOException e) {
+                System.out.println("ERROR: Unable to get queries file");
                 e.printStackTrace();
             }
         } catch (Exception e) {
-            System.out.println("ERROR: Unable to get lexicon");
+            System.out.println("ERROR: Unable to get index");
             e.printStackTrace();
         }
     }
 
-    // Determining booleanAND results of a query
-    public static List<Integer> booleanANDResults(List<String> queryTerms, HashMap<String, Integer> lexicon,
-                                                  HashMap<Integer, List<Integer>> invIndex) {
-        HashMap<Integer, Integer> docCount = new HashMap<>();
+    // Determining booleanAND results of a query, in increasing docid order. The postings are intersected from
+    // the shortest list, skipping through the longer ones
+    public static List<Integer> booleanANDResults(List<String> queryTerms, BinaryIndex index) {
+        List<Integer> resultSet = new ArrayList<>();
+        List<PostingsIterator> iterators = new ArrayList<>();
         for (String term : queryTerms) {
-            int termId;
-            if (lexicon.containsKey(term)) {
-                termId = lexicon.get(term);
-            } else {
-                continue;
-            }
-            List<Integer> postings = invIndex.get(termId);
-            for (int i = 0; i < postings.size(); i+=2) {
-                int docid = postings.get(i);
-                if (docCount.containsKey(docid)) {
-                    int count = docCount.get(docid);
-                    docCount.put(docid, count + 1);
-                } else {
-                    docCount.put(docid, 1);
-                }
+            int termId = index.termID(term);
+
+            // No document contains a term that is not in the lexicon
+            if (termId < 0) {
+                return resultSet;
             }
+            iterators.add(index.iterator(termId));
         }
+        if (iterators.isEmpty()) {
+            return resultSet;
+        }
+
+        ConjunctionIterator conjunction = new ConjunctionIterator(iterators);
+        for (int docid = conjunction.nextDoc(); docid != PostingsIterator.NO_MORE_DOCS; docid = conjunction.nextDoc()) {
+            resultSet.add(docid);
+        }
+        return resultSet;
+    }
+
+    // Determining booleanAND results of a query from decoded postings, in increasing docid order. Every docid
+    // of the shortest list is searched for in the longer ones by galloping forward from where the last search
+    // ended
+    public static List<Integer> booleanANDResults(List<String> queryTerms, BinaryIndex index, PostingsSource postingsSource) {
         List<Integer> resultSet = new ArrayList<>();
-        for (int docid : docCount.keySet()) {
-            if (docCount.get(docid) == queryTerms.size()) {
-                resultSet.add(docid);
+        List<PostingsList> lists = new ArrayList<>();
+        for (String term : queryTerms) {
+            int termId = index.termID(term);
+
+            // No document contains a term that is not in the lexicon
+            if (termId < 0) {
+                return resultSet;
+            }
+            lists.add(postingsSource.get(termId));
+        }
+        if (lists.isEmpty()) {
+            return resultSet;
+        }
+        lists.sort(Comparator.comparingInt(PostingsList::size));
+
+        PostingsList shortest = lists.get(0);
+        int[] positions = new int[lists.size()];
+        nextDoc:
+        for (int i = 0; i < shortest.size(); i++) {
+            int docid = shortest.getDocID(i);
+            for (int j = 1; j < lists.size(); j++) {
+                PostingsList postings = lists.get(j);
+                positions[j] = gallop(postings, positions[j], docid);
+                if (positions[j] == postings.size()) {
+                    break nextDoc;
+                }
+                if (postings.getDocID(positions[j]) != docid) {
+                    continue nextDoc;
+                }
             }
+            resultSet.add(docid);
         }
         return resultSet;
     }
+
+    // The first position from start on whose docid is at least target, or postings.size() if there is none
+    static int gallop(PostingsList postings, int start, int target) {
+        int size = postings.size();
+        if (start >= size || postings.getDocID(start) >= target) {
+            return start;
+        }
+
+        // Double the step until it passes target, then binary search the last step
+        int low = start;
+        int step = 1;
+        int high = start + step;
+        while (high < size && postings.getDocID(high) < target) {
+            low = high;
+            step *= 2;
+            high = start + step;
+        }
+        high = Math.min(high, size);
+        while (low + 1 < high) {
+            int mid = (low + high) >>> 1;
+            if (postings.getDocID(mid) < target) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return high;
+    }
 }
@@ -0,0 +1,57 @@
+package com.jonathan;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.jonathan.PostingsIterator.NO_MORE_DOCS;
+
+// Iterates over the docids that are in every one of a set of postings. The shortest list leads, and each of
+// the longer lists is only asked to advance() to the lead's current docid, so it skips whole blocks rather
+// than decoding every posting. When a docid is returned every postings iterator is positioned on it, so
+// their counts can be read to score the document.
+public class ConjunctionIterator {
+    private final PostingsIterator lead;
+    private final PostingsIterator[] others;
+    private int docID = -1;
+
+    public ConjunctionIterator(List<PostingsIterator> iterators) {
+        if (iterators.isEmpty()) {
+            throw new IllegalArgumentException("A conjunction needs at least one postings iterator");
+        }
+        List<PostingsIterator> byCost = new ArrayList<>(iterators);
+        byCost.sort(Comparator.comparingInt(PostingsIterator::cost));
+        this.lead = byCost.get(0);
+        this.others = byCost.subList(1, byCost.size()).toArray(new PostingsIterator[0]);
+    }
+
+    public int docID() {
+        return docID;
+    }
+
+    // Move to the next docid in every postings, or NO_MORE_DOCS
+    public int nextDoc() {
+        return doNext(lead.nextDoc());
+    }
+
+    // Move to the first docid of at least target that is in every postings, or NO_MORE_DOCS
+    public int advance(int target) {
+        return doNext(lead.advance(target));
+    }
+
+    private int doNext(int doc) {
+        advanceLead:
+        while (doc != NO_MORE_DOCS) {
+            for (PostingsIterator other : others) {
+                int next = other.advance(doc);
+                if (next > doc) {
+                    // The lead can jump past everything below the docid the longer list landed on
+                    doc = lead.advance(next);
+                    continue advanceLead;
+                }
+            }
+            return docID = doc;
+        }
+        return docID = NO_MORE_DOCS;
+    }
+}
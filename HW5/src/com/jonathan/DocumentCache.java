@@ -0,0 +1,157 @@
+package com.jonathan;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Recently read documents with their headline, text and date already taken out, within a budget of bytes.
+// Search reads each of its results to build the summary, and then again when the user asks for one of them
+// by rank; both go through here, so an interactive session reads and scans each document once. Documents are
+// kept by internal id and read from the document store by it, or from their own files by docno if the store
+// was not built, as GetDoc.getDoc reads them. The least recently used documents are evicted first. A budget of 0 caches nothing. All methods are synchronized,
+// except that documents are read and scanned outside the lock.
+public class DocumentCache {
+
+    // A document and the fields Search shows of it
+    public static class Document {
+        private final String docno;
+        private final String raw;
+        private final String headline;
+        private final String text;
+        private final String date;
+
+        public Document(String docno, String raw, String headline, String text, String date) {
+            this.docno = docno;
+            this.raw = raw;
+            this.headline = headline;
+            this.text = text;
+            this.date = date;
+        }
+
+        public String getDocno() {
+            return docno;
+        }
+
+        public String getRaw() {
+            return raw;
+        }
+
+        public String getHeadline() {
+            return headline;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String getDate() {
+            return date;
+        }
+
+        // Approximate bytes held, counting two bytes per char and the headers of the strings
+        long bytes() {
+            return 64 + 5 * 40 + 2L * (docno.length() + raw.length() + headline.length() + text.length() + date.length());
+        }
+    }
+
+    private final String indexedDataPath;
+    private final BinaryIndex index;
+    private final DocumentStore documentStore;
+    private final long maxBytes;
+
+    // Least recently used first
+    private final LinkedHashMap<Integer, Document> documents = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    // documentStore may be null
+    public DocumentCache(String indexedDataPath, BinaryIndex index, DocumentStore documentStore, long maxBytes) {
+        this.indexedDataPath = indexedDataPath;
+        this.index = index;
+        this.documentStore = documentStore;
+        this.maxBytes = maxBytes;
+    }
+
+    // The document with the internal id
+    public Document get(int docID) {
+        synchronized (this) {
+            Document document = documents.get(docID);
+            if (document != null) {
+                hits++;
+                return document;
+            }
+            misses++;
+        }
+
+        String docno = index.docno(docID);
+        String raw = read(docID, docno);
+        DocumentScanner scanner = new DocumentScanner();
+        scanner.scan(raw);
+        Document document = new Document(docno, raw, scanner.getField(DocumentScanner.HEADLINE),
+                scanner.getField(DocumentScanner.TEXT), IndexEngine.getFormattedDate(docno));
+        long documentBytes = document.bytes();
+        if (documentBytes > maxBytes) {
+            return document;
+        }
+
+        synchronized (this) {
+            if (documents.putIfAbsent(docID, document) != null) {
+                return document;
+            }
+            bytes += documentBytes;
+            Iterator<Map.Entry<Integer, Document>> eldest = documents.entrySet().iterator();
+            while (bytes > maxBytes) {
+                bytes -= eldest.next().getValue().bytes();
+                eldest.remove();
+                evictions++;
+            }
+        }
+        return document;
+    }
+
+    // Read a document from the document store by its internal id, or from its own file by docno if there is
+    // no store
+    private String read(int docID, String docno) {
+        if (documentStore == null) {
+            return GetDoc.getDoc(indexedDataPath, null, docno);
+        }
+        try {
+            return documentStore.getDocument(docID);
+        } catch (IOException e) {
+            System.out.println("ERROR: Unable to get indexed data");
+            e.printStackTrace();
+        }
+        return "";
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    // Share of the lookups that were hits
+    public synchronized double hitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d hits, %d misses (hit rate %.3f), %d evictions, %d documents, %d of %d bytes",
+                hits, misses, hitRate(), evictions, documents.size(), bytes, maxBytes);
+    }
+}
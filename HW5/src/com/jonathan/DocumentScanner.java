@@ -0,0 +1,234 @@
+package com.jonathan;
+
+import java.util.Arrays;
+
+// Hand written replacement for the per-document regexes in IndexEngine. One sweep over the document finds
+// the DOCNO, HEADLINE, TEXT and GRAPHIC fields, then each field is copied into a shared buffer with its
+// inner tags stripped and whitespace collapsed, so callers can read a field as a char range of buffer().
+// The fields come out exactly as getDocNo, getHeadline, getText and getGraphic used to return them.
+// A scanner is reused from document to document and is not thread safe.
+public class DocumentScanner {
+    public static final int DOCNO = 0;
+    public static final int HEADLINE = 1;
+    public static final int TEXT = 2;
+    public static final int GRAPHIC = 3;
+    private static final int NUM_FIELDS = 4;
+
+    private static final char[][] OPEN_TAGS = {
+            "<DOCNO>".toCharArray(), "<HEADLINE>".toCharArray(), "<TEXT>".toCharArray(), "<GRAPHIC>".toCharArray()};
+    private static final char[][] CLOSE_TAGS = {
+            "</DOCNO>".toCharArray(), "</HEADLINE>".toCharArray(), "</TEXT>".toCharArray(), "</GRAPHIC>".toCharArray()};
+
+    private char[] doc = new char[1 << 14];
+    private int docLength;
+
+    // Raw content of each field in doc, -1 when the field was not found
+    private final int[] rawStart = new int[NUM_FIELDS];
+    private final int[] rawEnd = new int[NUM_FIELDS];
+
+    // Cleaned up content of each field in buffer
+    private char[] buffer = new char[1 << 14];
+    private final int[] fieldStart = new int[NUM_FIELDS];
+    private final int[] fieldEnd = new int[NUM_FIELDS];
+    private final boolean[] fieldAscii = new boolean[NUM_FIELDS];
+
+    // All the chars copied into the current field OR'd together, to tell if it is pure ASCII
+    private int copiedBits;
+
+    // Scan a document, replacing the fields of the previous one
+    public void scan(CharSequence document) {
+        docLength = document.length();
+        if (doc.length < docLength) {
+            doc = new char[Math.max(docLength, doc.length * 2)];
+        }
+        if (document instanceof String) {
+            ((String) document).getChars(0, docLength, doc, 0);
+        } else if (document instanceof StringBuffer) {
+            ((StringBuffer) document).getChars(0, docLength, doc, 0);
+        } else if (document instanceof StringBuilder) {
+            ((StringBuilder) document).getChars(0, docLength, doc, 0);
+        } else {
+            for (int i = 0; i < docLength; i++) {
+                doc[i] = document.charAt(i);
+            }
+        }
+
+        findFields();
+
+        int out = 0;
+        for (int field = 0; field < NUM_FIELDS; field++) {
+            fieldStart[field] = out;
+            copiedBits = 0;
+            if (rawStart[field] >= 0) {
+                int length = rawEnd[field] - rawStart[field];
+                if (buffer.length < out + length) {
+                    buffer = Arrays.copyOf(buffer, Math.max(out + length, buffer.length * 2));
+                }
+                out = field == DOCNO ? copyWithoutWhitespace(rawStart[field], rawEnd[field], out)
+                        : copyStripped(rawStart[field], rawEnd[field], out);
+            }
+            fieldEnd[field] = out;
+            fieldAscii[field] = copiedBits < 128;
+        }
+        trim(HEADLINE);
+        trim(TEXT);
+        trim(GRAPHIC);
+    }
+
+    // The buffer holding every field, only valid until the next scan
+    public char[] buffer() {
+        return buffer;
+    }
+
+    public int start(int field) {
+        return fieldStart[field];
+    }
+
+    public int end(int field) {
+        return fieldEnd[field];
+    }
+
+    public int length(int field) {
+        return fieldEnd[field] - fieldStart[field];
+    }
+
+    // True if every char of the field is ASCII
+    public boolean isAscii(int field) {
+        return fieldAscii[field];
+    }
+
+    public String getField(int field) {
+        return new String(buffer, fieldStart[field], fieldEnd[field] - fieldStart[field]);
+    }
+
+    // Locate the raw content of every field in a single pass over the document
+    private void findFields() {
+        Arrays.fill(rawStart, -1);
+        Arrays.fill(rawEnd, -1);
+
+        // The docno regex does not match across lines, so a <DOCNO> is only a candidate until the next line break
+        int docnoCandidate = -1;
+        boolean docnoFound = false;
+
+        for (int i = 0; i < docLength; i++) {
+            char c = doc[i];
+            if (isLineTerminator(c)) {
+                docnoCandidate = -1;
+                continue;
+            }
+            if (c != '<') {
+                continue;
+            }
+
+            if (!docnoFound) {
+                if (docnoCandidate < 0 && matches(i, OPEN_TAGS[DOCNO])) {
+                    docnoCandidate = i + OPEN_TAGS[DOCNO].length;
+                } else if (docnoCandidate >= 0 && i > docnoCandidate && matches(i, CLOSE_TAGS[DOCNO])) {
+                    rawStart[DOCNO] = docnoCandidate;
+                    rawEnd[DOCNO] = i;
+                    docnoFound = true;
+                }
+            }
+
+            for (int field = HEADLINE; field < NUM_FIELDS; field++) {
+                if (rawStart[field] < 0) {
+                    if (matches(i, OPEN_TAGS[field])) {
+                        rawStart[field] = i + OPEN_TAGS[field].length;
+                    }
+                } else if (rawEnd[field] < 0 && matches(i, CLOSE_TAGS[field])) {
+                    rawEnd[field] = i;
+                }
+            }
+        }
+
+        // A field without a closing tag does not match at all
+        for (int field = HEADLINE; field < NUM_FIELDS; field++) {
+            if (rawEnd[field] < 0) {
+                rawStart[field] = -1;
+            }
+        }
+    }
+
+    // Same as .replaceAll("\\s", "")
+    private int copyWithoutWhitespace(int from, int to, int out) {
+        for (int i = from; i < to; i++) {
+            if (!isWhitespace(doc[i])) {
+                buffer[out++] = doc[i];
+                copiedBits |= doc[i];
+            }
+        }
+        return out;
+    }
+
+    // Same as .replaceAll("<[^>]*>", "").replaceAll("\\s+", " ") on the raw field content
+    private int copyStripped(int from, int to, int out) {
+        boolean lastWasSpace = false;
+        boolean moreTags = true;
+        int i = from;
+        while (i < to) {
+            char c = doc[i];
+            if (c == '<' && moreTags) {
+                int tagEnd = indexOf('>', i + 1, to);
+                if (tagEnd >= 0) {
+                    i = tagEnd + 1;
+                    continue;
+                }
+                // Without a '>' left in the field no later '<' can start a tag either
+                moreTags = false;
+            }
+            if (isWhitespace(c)) {
+                if (!lastWasSpace) {
+                    buffer[out++] = ' ';
+                    lastWasSpace = true;
+                }
+            } else {
+                buffer[out++] = c;
+                copiedBits |= c;
+                lastWasSpace = false;
+            }
+            i++;
+        }
+        return out;
+    }
+
+    // Same as String.trim
+    private void trim(int field) {
+        while (fieldStart[field] < fieldEnd[field] && buffer[fieldStart[field]] <= ' ') {
+            fieldStart[field]++;
+        }
+        while (fieldEnd[field] > fieldStart[field] && buffer[fieldEnd[field] - 1] <= ' ') {
+            fieldEnd[field]--;
+        }
+    }
+
+    private boolean matches(int pos, char[] tag) {
+        if (pos + tag.length > docLength) {
+            return false;
+        }
+        for (int i = 0; i < tag.length; i++) {
+            if (doc[pos + i] != tag[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (doc[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // The characters matched by \s
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // The characters that . does not match
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
@@ -0,0 +1,121 @@
+package com.jonathan;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+// Checks that DocumentScanner extracts exactly the same fields as the regexes that IndexEngine used before it,
+// first on a set of edge case documents and then on every document of a collection.
+public class DocumentScannerParity {
+    private static final Pattern DOCNO_REGEX = Pattern.compile("<DOCNO>(.+?)</DOCNO>");
+    private static final Pattern HEADLINE_REGEX = Pattern.compile("<HEADLINE>([\\s\\S]*?)</HEADLINE>");
+    private static final Pattern TEXT_REGEX = Pattern.compile("<TEXT>([\\s\\S]*?)</TEXT>");
+    private static final Pattern GRAPHIC_REGEX = Pattern.compile("<GRAPHIC>([\\s\\S]*?)</GRAPHIC>");
+
+    private static final String[] FIELD_NAMES = {"DOCNO", "HEADLINE", "TEXT", "GRAPHIC"};
+
+    private static final String[] EDGE_CASES = {
+            "",
+            "<DOC>\n<DOCNO> LA010189-0001 </DOCNO>\n</DOC>\n",
+            "<DOCNO></DOCNO>\n<DOCNO> LA010189-0002 </DOCNO>",
+            "<DOCNO></DOCNO>x</DOCNO>",
+            "<DOCNO> LA010189\n-0003 </DOCNO>\n<DOCNO>LA010189-0004</DOCNO>",
+            "<DOCNO> a <DOCNO> b </DOCNO>",
+            "<DOCNO>\tLA 0101 89</DOCNO>",
+            "<HEADLINE>\n<P>\n  Lots   of\tspace \n</P>\n</HEADLINE>",
+            "<HEADLINE>no closing tag",
+            "<HEADLINE></HEADLINE>",
+            "<HEADLINE>a < b</HEADLINE>",
+            "<HEADLINE>a <b <c> d</HEADLINE>",
+            "<HEADLINE>x<P>y</P>z</HEADLINE><HEADLINE>second</HEADLINE>",
+            "<HEADLINE>a <P> \n <P> b</HEADLINE>",
+            "<HEADLINE>\u0001 control \u0002</HEADLINE>",
+            "<TEXT>one</TEXT><TEXT>two</TEXT>",
+            "<TEXT>\n<P>\nA > B and C < D.\n</P>\n</TEXT>",
+            "<HEADLINE><TEXT>nested</TEXT></HEADLINE>",
+            "<TEXT>open <GRAPHIC>graphic</GRAPHIC> close</TEXT>",
+            "<GRAPHIC>\n<P>\nPhoto\n</P>\n</GRAPHIC>\n<TEXT>\n</TEXT>",
+            "<TEXT>unterminated <tag",
+    };
+
+    public static void main(String[] args) throws IOException {
+
+        // Input argument checking
+        if (args.length > 1) {
+            System.out.printf("ERROR: Wrong number of arguments passed in! Expected: 1. Received: %d%n", args.length);
+            System.out.println("First parameter (optional): path to the latimes.gz file.");
+            System.exit(1);
+        }
+
+        DocumentScanner scanner = new DocumentScanner();
+        int mismatches = 0;
+        for (String doc : EDGE_CASES) {
+            mismatches += compare(scanner, new StringBuffer(doc));
+        }
+        System.out.printf("Checked %d edge cases%n", EDGE_CASES.length);
+
+        if (args.length == 1) {
+            int numDocs = 0;
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(args[0]))))) {
+                String txt;
+                StringBuffer doc = new StringBuffer();
+                while ((txt = br.readLine()) != null) {
+                    doc.append(txt + "\n");
+                    if (txt.contains("</DOC>")) {
+                        mismatches += compare(scanner, doc);
+                        doc.delete(0, doc.length());
+                        numDocs++;
+                    }
+                }
+            }
+            System.out.printf("Checked %d documents from %s%n", numDocs, args[0]);
+        }
+
+        if (mismatches > 0) {
+            System.out.printf("ERROR: %d fields did not match the regex output%n", mismatches);
+            System.exit(1);
+        }
+        System.out.println("All fields match the regex output");
+    }
+
+    // Compare every field of a document, printing and counting the ones that differ
+    private static int compare(DocumentScanner scanner, StringBuffer doc) {
+        String[] expected = {regexDocNo(doc), regexField(HEADLINE_REGEX, doc), regexField(TEXT_REGEX, doc), regexField(GRAPHIC_REGEX, doc)};
+        scanner.scan(doc);
+
+        int mismatches = 0;
+        for (int field = 0; field < expected.length; field++) {
+            String actual = scanner.getField(field);
+            if (!actual.equals(expected[field])) {
+                System.out.printf("MISMATCH in %s of document:%n%s%nexpected: [%s]%nactual:   [%s]%n",
+                        FIELD_NAMES[field], doc, expected[field], actual);
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    // The original IndexEngine.getDocNo
+    private static String regexDocNo(StringBuffer doc) {
+        Matcher docnoMatcher = DOCNO_REGEX.matcher(doc);
+        String docno = "";
+        if (docnoMatcher.find()) {
+            docno = docnoMatcher.group(1).replaceAll("\\s", "");
+        }
+        return docno;
+    }
+
+    // The original IndexEngine.getHeadline, getText and getGraphic
+    private static String regexField(Pattern regex, StringBuffer doc) {
+        Matcher matcher = regex.matcher(doc);
+        String field = "";
+        if (matcher.find()) field = matcher.group(1);
+
+        return field.replaceAll("<[^>]*>", "")
+                .replaceAll("\\s+", " ").trim();
+    }
+}
@@ -0,0 +1,178 @@
+package com.jonathan;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// Reads documents back out of the single file document store written by DocumentStoreWriter.
+// documents.dat holds the deflated blocks of documents, documents.idx a fixed width entry for every
+// internal id giving the block of the document and where it sits inside the block, and documents.meta the
+// docno, date and headline of every document. All three files are memory mapped, so looking up a document by
+// internal id is a read of its index entry followed by inflating its block straight out of the mapping.
+// The mappings are read only, so a store can be shared between threads.
+public class DocumentStore implements AutoCloseable {
+    public static final String DATA_FILE = "documents.dat";
+    public static final String INDEX_FILE = "documents.idx";
+    public static final String METADATA_FILE = "documents.meta";
+    static final int ENTRY_SIZE = 24;
+
+    // The metadata of a document, which can be read without inflating the document
+    public static class Metadata {
+        private final int _id;
+        private final String _docno;
+        private final String _date;
+        private final String _headline;
+
+        public Metadata(int id, String docno, String date, String headline) {
+            this._id = id;
+            this._docno = docno;
+            this._date = date;
+            this._headline = headline;
+        }
+
+        public int getId() {
+            return _id;
+        }
+        public String getDocno() {
+            return _docno;
+        }
+        public String getDate() {
+            return _date;
+        }
+        public String getHeadline() {
+            return _headline;
+        }
+    }
+
+    private final String _indexedDataPath;
+    private final MappedByteBuffer data;
+    private final MappedByteBuffer index;
+    private final MappedByteBuffer metadata;
+    private final int numDocuments;
+
+    // Opened the first time a document is looked up by docno
+    private BinaryIndex binaryIndex = null;
+
+    private DocumentStore(String indexedDataPath) throws IOException {
+        this._indexedDataPath = indexedDataPath;
+        this.data = map(Paths.get(indexedDataPath, DATA_FILE));
+        this.index = map(Paths.get(indexedDataPath, INDEX_FILE));
+        this.metadata = map(Paths.get(indexedDataPath, METADATA_FILE));
+        this.numDocuments = index.capacity() / ENTRY_SIZE;
+    }
+
+    // Open the document store of the indexed data, or return null if it was only saved as one file per document
+    public static DocumentStore open(String indexedDataPath) throws IOException {
+        Path indexFile = Paths.get(indexedDataPath, INDEX_FILE);
+        if (!Files.exists(indexFile)) {
+            return null;
+        }
+        return new DocumentStore(indexedDataPath);
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(String.format("%s is too large to map", file));
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    public int numDocuments() {
+        return numDocuments;
+    }
+
+    // Return the stored document with the internal id
+    public String getDocument(int id) throws IOException {
+        int entry = entryOffset(id);
+        int blockOffset = (int) index.getLong(entry);
+        int offsetInBlock = index.getInt(entry + 8);
+        int length = index.getInt(entry + 12);
+
+        int compressedLength = data.getInt(blockOffset);
+        int uncompressedLength = data.getInt(blockOffset + 4);
+
+        // Only inflate as far as the end of the document
+        byte[] block = new byte[offsetInBlock + length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data.slice(blockOffset + 8, compressedLength));
+            int inflated = 0;
+            while (inflated < block.length && !inflater.finished()) {
+                inflated += inflater.inflate(block, inflated, block.length - inflated);
+            }
+            if (inflated < block.length || uncompressedLength < block.length) {
+                throw new IOException(String.format("Block of document %d is truncated", id));
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(String.format("Block of document %d is corrupt", id), e);
+        } finally {
+            inflater.end();
+        }
+        return new String(block, offsetInBlock, length, StandardCharsets.UTF_8);
+    }
+
+    // Return the stored document with the docno, or null if there is no such document
+    public String getDocument(String docno) throws IOException {
+        Integer id = getId(docno);
+        return id == null ? null : getDocument(id);
+    }
+
+    // Return the docno, date and headline of the document with the internal id, without reading the document
+    public Metadata getMetadata(int id) throws IOException {
+        int offset = (int) index.getLong(entryOffset(id) + 16);
+        ByteBuffer record = metadata.duplicate();
+        record.position(offset);
+        String docno = readString(record);
+        String date = readString(record);
+        String headline = readString(record);
+        return new Metadata(id, docno, date, headline);
+    }
+
+    // Return the metadata of the document with the docno, or null if there is no such document
+    public Metadata getMetadata(String docno) throws IOException {
+        Integer id = getId(docno);
+        return id == null ? null : getMetadata(id);
+    }
+
+    // Internal id of a docno, or null if there is no such document
+    public Integer getId(String docno) throws IOException {
+        int id = getIndex().docID(docno);
+        return id < 0 ? null : id;
+    }
+
+    private int entryOffset(int id) throws IOException {
+        if (id < 0 || id >= numDocuments) {
+            throw new IOException(String.format("No document with internal id %d", id));
+        }
+        return id * ENTRY_SIZE;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String value = StandardCharsets.UTF_8.decode(buffer.slice(buffer.position(), length)).toString();
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private synchronized BinaryIndex getIndex() throws IOException {
+        if (binaryIndex == null) {
+            binaryIndex = BinaryIndex.open(_indexedDataPath);
+        }
+        return binaryIndex;
+    }
+
+    // The mappings are released when the store is garbage collected
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,166 @@
+package com.jonathan;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+// Writes the document store read by DocumentStore. Documents are appended in internal id order into blocks
+// of about BLOCK_SIZE bytes, and each full block is deflated and written on a background thread so that
+// compression overlaps with indexing. The docno, date and headline of each document are also written
+// uncompressed to a metadata file, so they can be read without inflating the document.
+public class DocumentStoreWriter {
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    // Number of full blocks that may be waiting to be compressed
+    private static final int BLOCKS_IN_FLIGHT = 4;
+
+    private final DataOutputStream data;
+    private final DataOutputStream index;
+    private final DataOutputStream metadata;
+    private final ExecutorService compressor = Executors.newSingleThreadExecutor();
+    private final Semaphore blocksInFlight = new Semaphore(BLOCKS_IN_FLIGHT);
+    // Fastest level, so that compressing keeps up with the merger. It still shrinks the text about five times
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private volatile IOException writeError = null;
+
+    private ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE + BLOCK_SIZE / 4);
+    private int[] blockOffsets = new int[64];
+    private int[] blockLengths = new int[64];
+    private long[] blockMetadataOffsets = new long[64];
+    private int docsInBlock = 0;
+    private int numDocuments = 0;
+    private long metadataOffset = 0;
+
+    // Only touched by the compressor thread
+    private long dataOffset = 0;
+    private byte[] compressed = new byte[BLOCK_SIZE];
+
+    public DocumentStoreWriter(String outputPath) throws IOException {
+        this.data = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(outputPath + "/" + DocumentStore.DATA_FILE), PostingsFile.BUFFER_SIZE));
+        this.index = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(outputPath + "/" + DocumentStore.INDEX_FILE), PostingsFile.BUFFER_SIZE));
+        this.metadata = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(outputPath + "/" + DocumentStore.METADATA_FILE), PostingsFile.BUFFER_SIZE));
+    }
+
+    // Append the next document, which must have the next internal id
+    public void add(int id, String docno, String date, String headline, String document) throws IOException {
+        if (id != numDocuments) {
+            throw new IllegalStateException(String.format("Expected document %d but received %d", numDocuments, id));
+        }
+        byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+        if (docsInBlock == blockOffsets.length) {
+            blockOffsets = Arrays.copyOf(blockOffsets, docsInBlock * 2);
+            blockLengths = Arrays.copyOf(blockLengths, docsInBlock * 2);
+            blockMetadataOffsets = Arrays.copyOf(blockMetadataOffsets, docsInBlock * 2);
+        }
+        blockOffsets[docsInBlock] = block.size();
+        blockLengths[docsInBlock] = bytes.length;
+        blockMetadataOffsets[docsInBlock] = metadataOffset;
+        metadataOffset += writeString(docno) + writeString(date) + writeString(headline);
+        block.write(bytes);
+        docsInBlock++;
+        numDocuments++;
+
+        if (block.size() >= BLOCK_SIZE) {
+            flushBlock();
+        }
+    }
+
+    public void close() throws IOException {
+        flushBlock();
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the document store", e);
+        } finally {
+            deflater.end();
+            data.close();
+            index.close();
+            metadata.close();
+        }
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    // Hand the current block off to the compressor thread and start a new one
+    private void flushBlock() throws IOException {
+        if (docsInBlock == 0) {
+            return;
+        }
+        if (writeError != null) {
+            throw writeError;
+        }
+        final ByteArrayOutputStream fullBlock = block;
+        final int[] offsets = Arrays.copyOf(blockOffsets, docsInBlock);
+        final int[] lengths = Arrays.copyOf(blockLengths, docsInBlock);
+        final long[] metadataOffsets = Arrays.copyOf(blockMetadataOffsets, docsInBlock);
+        try {
+            blocksInFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the document store", e);
+        }
+        compressor.execute(() -> {
+            try {
+                writeBlock(fullBlock, offsets, lengths, metadataOffsets);
+            } catch (IOException e) {
+                writeError = e;
+            } finally {
+                blocksInFlight.release();
+            }
+        });
+
+        block = new ByteArrayOutputStream(BLOCK_SIZE + BLOCK_SIZE / 4);
+        docsInBlock = 0;
+    }
+
+    // Block format: [compressed length, uncompressed length, deflated bytes]
+    // Index entry of each document: [offset of its block, offset within the block, length, offset of its metadata]
+    private void writeBlock(ByteArrayOutputStream fullBlock, int[] offsets, int[] lengths, long[] metadataOffsets) throws IOException {
+        byte[] uncompressed = fullBlock.toByteArray();
+        deflater.reset();
+        deflater.setInput(uncompressed);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+
+        data.writeInt(compressedLength);
+        data.writeInt(uncompressed.length);
+        data.write(compressed, 0, compressedLength);
+
+        for (int i = 0; i < offsets.length; i++) {
+            index.writeLong(dataOffset);
+            index.writeInt(offsets[i]);
+            index.writeInt(lengths[i]);
+            index.writeLong(metadataOffsets[i]);
+        }
+        dataOffset += 8 + compressedLength;
+    }
+
+    // Metadata strings are written as [length, UTF-8 bytes]. Returns the number of bytes written
+    private int writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        metadata.writeInt(bytes.length);
+        metadata.write(bytes);
+        return 4 + bytes.length;
+    }
+}
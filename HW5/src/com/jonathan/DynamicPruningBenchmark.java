@@ -0,0 +1,121 @@
+package com.jonathan;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+// Runs every query of a queries file with each query processor and prints, per query, how many postings
+// each one scored and the median of its latency over a few rounds, and whether it gave the same top k as
+// scoring every posting. The exhaustive postings count is every posting of every query token. The totals are
+// followed by percentiles of the latencies over the queries, as the slowest queries are what pruning is for.
+public class DynamicPruningBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int WARM_UP_ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+
+        // Input argument checking
+        if (args.length < 2) {
+            System.out.printf("ERROR: Wrong number of arguments passed in! Expected: 2. Received: %d%n", args.length);
+            System.out.println("First parameter: path to the indexed data");
+            System.out.println("Second parameter: path to the queries file");
+            System.out.println("Optional: --k=N to find the top N documents (default: 1000)");
+            System.exit(1);
+        }
+        HashMap<String, String> options = IndexEngine.parseOptions(args, 2, "k");
+        int k = Integer.parseInt(options.getOrDefault("k", "1000"));
+
+        BinaryIndex index = BinaryIndex.open(args[0]);
+        List<String> queryIds = new ArrayList<>();
+        List<List<String>> queries = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(args[1]))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                List<String> queryTokens = new ArrayList<>();
+                IndexEngine.tokenize(br.readLine(), queryTokens, false);
+                queryIds.add(line);
+                queries.add(queryTokens);
+            }
+        }
+
+        QueryProcessor[] processors = QueryProcessor.values();
+
+        // Warm up
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            for (List<String> queryTokens : queries) {
+                for (QueryProcessor processor : processors) {
+                    processor.calculateBM25(queryTokens, index, k, null);
+                }
+            }
+        }
+
+        System.out.printf("Postings scored and median latency of %d rounds, top %d documents%n", ROUNDS, k);
+        StringBuilder header = new StringBuilder(String.format("%-8s", "query"));
+        for (QueryProcessor processor : processors) {
+            header.append(String.format(" %12s %10s", processor.optionName(), "ms"));
+        }
+        System.out.println(header.append("  same"));
+
+        long[][] postings = new long[processors.length][queries.size()];
+        double[][] latencies = new double[processors.length][queries.size()];
+        int differing = 0;
+        for (int q = 0; q < queries.size(); q++) {
+            List<String> queryTokens = queries.get(q);
+            StringBuilder row = new StringBuilder(String.format("%-8s", queryIds.get(q)));
+            RankedList exhaustive = null;
+            boolean same = true;
+            for (int p = 0; p < processors.length; p++) {
+                double[] rounds = new double[ROUNDS];
+                RankedList ranked = null;
+                QueryStats stats = null;
+                for (int round = 0; round < ROUNDS; round++) {
+                    stats = new QueryStats();
+                    long start = System.nanoTime();
+                    ranked = processors[p].calculateBM25(queryTokens, index, k, stats);
+                    rounds[round] = (System.nanoTime() - start) / 1e6;
+                }
+                postings[p][q] = stats.postingsScored();
+                latencies[p][q] = Benchmarks.median(rounds);
+                if (processors[p] == QueryProcessor.EXHAUSTIVE) {
+                    exhaustive = ranked;
+                } else {
+                    same &= sameRanking(exhaustive, ranked);
+                }
+                row.append(String.format(" %12d %10.3f", postings[p][q], latencies[p][q]));
+            }
+            if (!same) {
+                differing++;
+            }
+            System.out.println(row.append(same ? "  yes" : "  NO"));
+        }
+
+        StringBuilder total = new StringBuilder(String.format("%-8s", "total"));
+        for (int p = 0; p < processors.length; p++) {
+            total.append(String.format(" %12d %10.3f", Arrays.stream(postings[p]).sum(), Arrays.stream(latencies[p]).sum()));
+        }
+        System.out.println(total);
+        for (int percentile : new int[] {50, 95, 99}) {
+            StringBuilder row = new StringBuilder(String.format("%-8s", "p" + percentile));
+            for (int p = 0; p < processors.length; p++) {
+                row.append(String.format(" %12s %10.3f", "", Benchmarks.percentile(latencies[p], percentile)));
+            }
+            System.out.println(row);
+        }
+        System.out.printf("%d of %d queries gave a different top %d than exhaustive%n", differing, queries.size(), k);
+    }
+
+    private static boolean sameRanking(RankedList expected, RankedList actual) {
+        if (expected.size() != actual.size()) {
+            return false;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (expected.docID(i) != actual.docID(i) || expected.score(i) != actual.score(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
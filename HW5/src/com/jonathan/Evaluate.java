@@ -239,11 +239,10 @@ public class Evaluate {
     public static TreeMap<String, Double> calculateTBG(String indexedDataPath, RelevanceJudgements judgements, Results results) throws Exception {
         TreeMap<String, Double> tbg = new TreeMap<>();
 
-        HashMap<String, Integer> documentLengthMap = null;
-        // Read in the mapping of docid to document length
-        try (FileInputStream fis = new FileInputStream(indexedDataPath + "/documentLength.txt");
-             ObjectInputStream ois = new ObjectInputStream(fis)) {
-            documentLengthMap = (HashMap<String, Integer>) ois.readObject();
+        BinaryIndex index = null;
+        // Read in the index for the document lengths
+        try {
+            index = BinaryIndex.open(indexedDataPath);
         } catch (Exception e) {
             System.out.println("ERROR: Unable to get document length");
             e.printStackTrace();
@@ -264,7 +263,7 @@ public class Evaluate {
                 String docID = result.getDocID();
                 int length = 0;
 
-                length = documentLengthMap.get(docID);
+                length = index.documentLength(index.docID(docID));
 
                 if (judgements.isRelevant(queryId, (result.getDocID()))) {
                     t_kSum += T_S + (0.018 * length + 7.8) * P_CLICK_RELEVANT;
@@ -1,21 +1,19 @@
 package com.jonathan;
 
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.HashMap;
 
 public class GetDoc {
     public static void main(String[] args) {
 
         // Input argument checking
-        if (args.length != 3) {
+        if (args.length < 3) {
             System.out.println(String.format("ERROR: Wrong number of arguments passed in! Expected: 3. Received: %d", args.length));
             System.out.println("First parameter: path to the indexed data");
             System.out.println("Second parameter: \"id\" or \"docno\"");
             System.out.println("Third parameter: internal integer id or docno");
+            System.out.println("Optional: --metadata to only print the docno, internal id, date and headline");
             System.exit(1);
         }
 
@@ -23,33 +21,67 @@ public class GetDoc {
         String lookupType = args[1];
         String lookupValue = args[2];
         String docno = lookupValue;
+        boolean metadataOnly = IndexEngine.parseOptions(args, 3, "metadata").containsKey("metadata");
 
         if (!(lookupType.equals("id") || lookupType.equals("docno"))) {
             System.out.println("ERROR: Invalid lookup type. Second parameter must be \"id\" or \"docno\"");
             System.exit(1);
         }
 
-        // Read in the id mapping file
-        if (lookupType.equals("id")) {
-            try (FileInputStream fis = new FileInputStream(indexedDataPath + "/idMapping.txt");
-                 ObjectInputStream ois = new ObjectInputStream(fis)) {
-                @SuppressWarnings("unchecked")
-                HashMap<Integer, String> idMap = (HashMap<Integer, String>) ois.readObject();
+        // Documents are read from the document store by internal id, without needing the id mapping
+        DocumentStore documentStore = null;
+        try {
+            documentStore = DocumentStore.open(indexedDataPath);
+            if (metadataOnly) {
+                if (documentStore == null) {
+                    System.out.println("ERROR: --metadata needs an index built with a document store");
+                    System.exit(1);
+                }
+                DocumentStore.Metadata metadata = lookupType.equals("id")
+                        ? documentStore.getMetadata(Integer.parseInt(lookupValue))
+                        : documentStore.getMetadata(lookupValue);
+                System.out.println(formatMetadata(metadata));
+                return;
+            }
+            if (documentStore != null && lookupType.equals("id")) {
+                System.out.println(documentStore.getDocument(Integer.parseInt(lookupValue)));
+                documentStore.close();
+                return;
+            }
+        } catch (IOException e) {
+            System.out.println("ERROR: Unable to get indexed data");
+            e.printStackTrace();
+        }
 
-                docno = idMap.get(Integer.parseInt(lookupValue));
+        // Look the docno up in the index
+        if (lookupType.equals("id")) {
+            try {
+                docno = BinaryIndex.open(indexedDataPath).docno(Integer.parseInt(lookupValue));
             } catch (Exception e) {
                 System.out.println("ERROR: Unable to get id mapping");
                 e.printStackTrace();
             }
         }
 
-        String doc = getDoc(indexedDataPath, docno);
+        String doc = getDoc(indexedDataPath, documentStore, docno);
         System.out.println(doc);
     }
 
     public static String getDoc(String indexedDataPath, String docno) {
-        // Output the desired file
+        return getDoc(indexedDataPath, null, docno);
+    }
+
+    // Read the document from the document store when there is one, and from its own file otherwise
+    public static String getDoc(String indexedDataPath, DocumentStore documentStore, String docno) {
         try {
+            if (documentStore != null) {
+                String doc = documentStore.getDocument(docno);
+                if (doc != null) {
+                    return doc;
+                }
+            }
+
+            // Output the desired file
             String outputPath = IndexEngine.getOutputFilePath(indexedDataPath, docno);
             return Files.readString(Paths.get(outputPath));
         } catch (IOException e) {
@@ -58,4 +90,13 @@ public class GetDoc {
         }
         return "";
     }
+
+    // The same header lines that start a stored document
+    public static String formatMetadata(DocumentStore.Metadata metadata) {
+        if (metadata == null) {
+            return "";
+        }
+        return String.format("docno: %s\ninternal id: %d\ndate: %s\nheadline: %s",
+                metadata.getDocno(), metadata.getId(), metadata.getDate(), metadata.getHeadline());
+    }
 }
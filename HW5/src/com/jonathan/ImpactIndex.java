@@ -0,0 +1,120 @@
+package com.jonathan;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Reader for impacts.bin, an impact ordered copy of the postings of index.bin for score at a time query
+// processing. Each posting has a quantized BM25 impact of 1 to LEVELS, its impact times the scale being at
+// least its term frequency part of BM25 times the idf of its term, and the postings of a term are grouped into
+// segments of equal impact, highest first, each in docid order. Term ids are those of the index.bin it was
+// written from, and postings with no impact (terms with a negative idf) are left out.
+//
+// Layout, all ints and longs big endian:
+//   header     [magic, version, number of documents, number of terms, scale (double), directory offset (long),
+//               file length (long)]
+//   terms      [number of segments] [impact, number of postings, byte length] per segment, then the docid
+//              gaps of each segment as variable byte codes
+//   directory  [offset (long)] of every term, then the end of the last term
+public class ImpactIndex {
+    public static final String FILE_NAME = "impacts.bin";
+
+    static final int MAGIC = 0x4A494D50;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 40;
+    static final int SEGMENT_ENTRY_SIZE = 12;
+    static final int LEVELS = 255;
+
+    private final MappedByteBuffer buffer;
+    private final int numTerms;
+    private final double scale;
+    private final int directory;
+
+    private ImpactIndex(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(String.format("%s is too large to map", file));
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(String.format("%s is not an impact index file", file));
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(String.format("%s is version %d of the impact index format but version %d is expected. Delete it and run ImpactIndexWriter on the indexed data",
+                    file, buffer.getInt(4), VERSION));
+        }
+        if (buffer.getLong(32) != buffer.capacity()) {
+            throw new IOException(String.format("%s is truncated", file));
+        }
+        numTerms = buffer.getInt(12);
+        scale = buffer.getDouble(16);
+        directory = (int) buffer.getLong(24);
+    }
+
+    // Open the impacts.bin of the indexed data, or return null if it has none
+    public static ImpactIndex open(String indexedDataPath, BinaryIndex index) throws IOException {
+        Path file = Paths.get(indexedDataPath, FILE_NAME);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        ImpactIndex impacts = new ImpactIndex(file);
+        if (impacts.numTerms != index.numTerms() || impacts.buffer.getInt(8) != index.numDocuments()) {
+            throw new IOException(String.format("%s was not written from the index.bin next to it. Delete it and run ImpactIndexWriter on the indexed data", file));
+        }
+        return impacts;
+    }
+
+    // BM25 score of one unit of impact
+    public double scale() {
+        return scale;
+    }
+
+    public int numSegments(int termID) {
+        return buffer.getInt(termStart(termID));
+    }
+
+    // Impact of every posting in a segment of a term, segments being in decreasing order of impact
+    public int impact(int termID, int segment) {
+        return buffer.getInt(termStart(termID) + 4 + SEGMENT_ENTRY_SIZE * segment);
+    }
+
+    public int numPostings(int termID, int segment) {
+        return buffer.getInt(termStart(termID) + 4 + SEGMENT_ENTRY_SIZE * segment + 4);
+    }
+
+    // Decode the docids of a segment into docids, which must hold numPostings of them
+    public void docIDs(int termID, int segment, int[] docIDs) {
+        int start = termStart(termID);
+        int numSegments = buffer.getInt(start);
+        int position = start + 4 + SEGMENT_ENTRY_SIZE * numSegments;
+        for (int s = 0; s < segment; s++) {
+            position += buffer.getInt(start + 4 + SEGMENT_ENTRY_SIZE * s + 8);
+        }
+        int count = numPostings(termID, segment);
+        int docID = 0;
+        for (int i = 0; i < count; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            docID += value;
+            docIDs[i] = docID;
+        }
+    }
+
+    private int termStart(int termID) {
+        if (termID < 0 || termID >= numTerms) {
+            throw new IllegalArgumentException(String.format("No term with id %d", termID));
+        }
+        return (int) buffer.getLong(directory + 8 * termID);
+    }
+}
@@ -0,0 +1,152 @@
+package com.jonathan;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static com.jonathan.ImpactIndex.*;
+
+// Writes impacts.bin, the impact ordered copy of the postings in index.bin read by ImpactIndex. The BM25
+// impact of every posting, its term frequency part times the idf of its term, is quantized to one of LEVELS
+// levels on a scale shared by every term, and the postings of each term are grouped into one segment per
+// level, highest first. IndexEngine writes it with --impacts, and it can be added to an index later by
+// running this class on the indexed data.
+public class ImpactIndexWriter {
+    public static void main(String[] args) {
+
+        // Input argument checking
+        if (args.length != 1) {
+            System.out.println(String.format("ERROR: Wrong number of arguments passed in! Expected: 1. Received: %d", args.length));
+            System.out.println("First parameter: path to the indexed data");
+            System.exit(1);
+        }
+
+        String indexedDataPath = args[0];
+        if (Files.exists(Paths.get(indexedDataPath, ImpactIndex.FILE_NAME))) {
+            System.out.println(String.format("ERROR: %s already exists!", ImpactIndex.FILE_NAME));
+            System.exit(1);
+        }
+
+        try {
+            long startTime = System.currentTimeMillis();
+            write(indexedDataPath);
+            long endTime = System.currentTimeMillis();
+            System.out.println(String.format("Wrote %s in %.2f seconds", ImpactIndex.FILE_NAME, (endTime - startTime) / 1000.0));
+        } catch (IOException e) {
+            System.out.println("ERROR: Unable to write the impact index");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    // Write the impacts.bin of the indexed data from its index.bin
+    public static void write(String indexedDataPath) throws IOException {
+        BinaryIndex index = BinaryIndex.open(indexedDataPath);
+        int N = index.numDocuments();
+        int numTerms = index.numTerms();
+        double[] lengthNorms = index.bm25LengthNorms();
+
+        // The largest impact any posting can have sets the scale. Terms with a negative idf get no impact
+        double[] idfs = new double[numTerms];
+        double maxImpact = 0;
+        for (int termID = 0; termID < numTerms; termID++) {
+            idfs[termID] = Math.max(BM25.idf(N, index.documentFrequency(termID)), 0);
+            maxImpact = Math.max(maxImpact, index.bm25MaxDocTf(termID) * idfs[termID]);
+        }
+        double scale = maxImpact > 0 ? maxImpact / LEVELS : 1;
+
+        String file = Paths.get(indexedDataPath, ImpactIndex.FILE_NAME).toString();
+        try (FileOutputStream fos = new FileOutputStream(file);
+             DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos, PostingsFile.BUFFER_SIZE))) {
+            dos.write(new byte[HEADER_SIZE]);
+            long position = HEADER_SIZE;
+
+            long[] termOffsets = new long[numTerms + 1];
+            int[] levelCounts = new int[LEVELS + 1];
+            int[] levelStarts = new int[LEVELS + 1];
+            int[] levels = new int[1024];
+            int[] byLevel = new int[1024];
+            byte[] encoded = new byte[1024];
+            for (int termID = 0; termID < numTerms; termID++) {
+                termOffsets[termID] = position;
+                PostingsList postings = index.postings(termID);
+                if (postings.size() > levels.length) {
+                    levels = new int[Math.max(postings.size(), 2 * levels.length)];
+                    byLevel = new int[levels.length];
+                }
+
+                Arrays.fill(levelCounts, 0);
+                for (int i = 0; i < postings.size(); i++) {
+                    double impact = BM25.docTf(postings.getCount(i), lengthNorms[postings.getDocID(i)]) * idfs[termID];
+                    levels[i] = (int) Math.min(LEVELS, Math.ceil(impact / scale));
+                    levelCounts[levels[i]]++;
+                }
+
+                // Docids from the highest level down, each level in docid order
+                int numSegments = 0;
+                int numPostings = 0;
+                for (int level = LEVELS; level >= 1; level--) {
+                    levelStarts[level] = numPostings;
+                    numPostings += levelCounts[level];
+                    if (levelCounts[level] > 0) {
+                        numSegments++;
+                    }
+                }
+                for (int i = 0; i < postings.size(); i++) {
+                    if (levels[i] > 0) {
+                        byLevel[levelStarts[levels[i]]++] = postings.getDocID(i);
+                    }
+                }
+
+                // [number of segments] [level, postings, byte length] per segment, then the docid gaps of each
+                dos.writeInt(numSegments);
+                int length = 0;
+                int next = 0;
+                for (int level = LEVELS; level >= 1; level--) {
+                    if (levelCounts[level] == 0) {
+                        continue;
+                    }
+                    int start = length;
+                    int previousDocID = 0;
+                    for (int i = 0; i < levelCounts[level]; i++) {
+                        if (encoded.length - length < 5) {
+                            encoded = Arrays.copyOf(encoded, encoded.length * 2);
+                        }
+                        int docID = byLevel[next++];
+                        length = BinaryIndexWriter.writeVByte(encoded, length, docID - previousDocID);
+                        previousDocID = docID;
+                    }
+                    dos.writeInt(level);
+                    dos.writeInt(levelCounts[level]);
+                    dos.writeInt(length - start);
+                }
+                dos.write(encoded, 0, length);
+                position += 4 + SEGMENT_ENTRY_SIZE * numSegments + length;
+            }
+            termOffsets[numTerms] = position;
+
+            long directoryOffset = position;
+            for (long termOffset : termOffsets) {
+                dos.writeLong(termOffset);
+            }
+            position += 8L * (numTerms + 1);
+            dos.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(N);
+            header.putInt(numTerms);
+            header.putDouble(scale);
+            header.putLong(directoryOffset);
+            header.putLong(position);
+            header.flip();
+            fos.getChannel().write(header, 0);
+        }
+    }
+}
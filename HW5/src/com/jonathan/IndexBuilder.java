@@ -0,0 +1,123 @@
+package com.jonathan;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+// Collection wide state of an index build. Documents must be added in input order since the
+// internal ids and the lexicon ids are assigned from the order that documents arrive in.
+public class IndexBuilder implements TermTokenizer.TermResolver {
+    private final String _outputPath;
+    private final FileWriter _metadataWriter;
+    private final DocumentStoreWriter _documentStore;
+
+    // Only set when building with a memory budget
+    private final SpimiIndexer _spimi;
+
+    private final List<String> docnos = new ArrayList<>();
+    private final HashMap<String, Integer> lexicon = new HashMap<>();
+    private final List<String> lexiconIdToString = new ArrayList<>();
+    private final InvertedIndex invIndex = new InvertedIndex();
+    private int[] documentLengths = new int[1024];
+
+    public IndexBuilder(String outputPath) throws IOException {
+        this(outputPath, null);
+    }
+
+    public IndexBuilder(String outputPath, SpimiIndexer spimi) throws IOException {
+        this._outputPath = outputPath;
+        this._spimi = spimi;
+        this._metadataWriter = new FileWriter(new File(outputPath + "/metadata.txt"), StandardCharsets.UTF_8);
+        this._documentStore = new DocumentStoreWriter(outputPath);
+    }
+
+    public int numDocuments() {
+        return docnos.size();
+    }
+
+    // Term id of a term in the lexicon, adding it if it is new
+    @Override
+    public int resolve(String term) {
+        Integer termID = lexicon.get(term);
+        if (termID == null) {
+            termID = lexicon.size();
+            lexicon.put(term, termID);
+            lexiconIdToString.add(term);
+        }
+        return termID;
+    }
+
+    @Override
+    public String term(int termID) {
+        return lexiconIdToString.get(termID);
+    }
+
+    // Assign term ids, update the postings and store the metadata and raw text of the next document
+    public void addDocument(ParsedDocument doc) throws IOException {
+        if (doc.getId() != docnos.size()) {
+            throw new IllegalStateException(String.format("Expected document %d but received %d", docnos.size(), doc.getId()));
+        }
+
+        int[] termIDs = doc.getTermIDs();
+        String[] terms = doc.getTerms();
+        int[] counts = doc.getCounts();
+        int newTerms = 0;
+        for (int i = 0; i < counts.length; i++) {
+            int termID = termIDs != null ? termIDs[i] : resolve(terms[i]);
+            if (invIndex.add(termID, doc.getId(), counts[i])) {
+                newTerms++;
+            }
+        }
+        if (_spimi != null && _spimi.recordDocument(counts.length, newTerms)) {
+            _spimi.flush(invIndex);
+        }
+
+        HashMap<String, String> metadata = new HashMap<>();
+        metadata.put("docno", doc.getDocno());
+        metadata.put("id", Integer.toString(doc.getId()));
+        metadata.put("headline", doc.getHeadline());
+        metadata.put("date", doc.getDate());
+        metadata.put("documentLength", Integer.toString(doc.getLength()));
+        IndexEngine.saveMetadata(_metadataWriter, metadata);
+        _documentStore.add(doc.getId(), doc.getDocno(), doc.getDate(), doc.getHeadline(),
+                IndexEngine.formatDocument(IndexEngine.getDocumentMetadata(doc)));
+
+        if (doc.getId() == documentLengths.length) {
+            documentLengths = Arrays.copyOf(documentLengths, documentLengths.length * 2);
+        }
+        documentLengths[doc.getId()] = doc.getLength();
+        docnos.add(doc.getDocno());
+    }
+
+    // Write out all the collection wide files into index.bin
+    public void close() throws IOException {
+        _metadataWriter.close();
+        _documentStore.close();
+
+        BinaryIndexWriter writer = new BinaryIndexWriter(_outputPath + "/" + BinaryIndex.FILE_NAME, docnos, documentLengths);
+        if (_spimi != null) {
+            // The merged postings are streamed into index.bin rather than loaded back in
+            String postingsFile = _outputPath + "/" + PostingsFile.FILE_NAME;
+            _spimi.flush(invIndex);
+            _spimi.merge(postingsFile);
+            System.out.printf("Merged %d runs into %s%n", _spimi.numRuns(), BinaryIndex.FILE_NAME);
+            PostingsFile.readTerms(postingsFile, writer);
+            Files.delete(Paths.get(postingsFile));
+        } else {
+            for (int termID = 0; termID < invIndex.numTerms(); termID++) {
+                PostingsList postings = invIndex.get(termID);
+                if (postings != null) {
+                    writer.accept(termID, postings);
+                }
+            }
+        }
+        writer.close(lexiconIdToString);
+    }
+}
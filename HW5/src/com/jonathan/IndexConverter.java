@@ -0,0 +1,86 @@
+package com.jonathan;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// Converts the indexed data of an earlier version, which kept its lexicon, id mapping and document lengths
+// in serialized HashMaps, into an index.bin. The old files are left in place.
+public class IndexConverter {
+    public static void main(String[] args) {
+
+        // Input argument checking
+        if (args.length != 1) {
+            System.out.println(String.format("ERROR: Wrong number of arguments passed in! Expected: 1. Received: %d", args.length));
+            System.out.println("First parameter: path to the indexed data");
+            System.exit(1);
+        }
+
+        String indexedDataPath = args[0];
+        if (Files.exists(Paths.get(indexedDataPath, BinaryIndex.FILE_NAME))) {
+            System.out.println(String.format("ERROR: %s already exists!", BinaryIndex.FILE_NAME));
+            System.exit(1);
+        }
+
+        try {
+            long startTime = System.currentTimeMillis();
+            convert(indexedDataPath);
+            long endTime = System.currentTimeMillis();
+            System.out.println(String.format("Converted %s to %s in %.2f seconds", indexedDataPath, BinaryIndex.FILE_NAME, (endTime - startTime) / 1000.0));
+        } catch (Exception e) {
+            System.out.println("ERROR: Unable to convert the indexed data");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    public static void convert(String indexedDataPath) throws IOException, ClassNotFoundException {
+        HashMap<Integer, String> idMap = readMap(indexedDataPath + "/idMapping.txt");
+        HashMap<String, Integer> documentLengthMap = readMap(indexedDataPath + "/documentLength.txt");
+        HashMap<Integer, String> lexiconIdToString = readMap(indexedDataPath + "/lexiconIdToString.txt");
+
+        List<String> docnos = new ArrayList<>();
+        int[] documentLengths = new int[idMap.size()];
+        for (int id = 0; id < idMap.size(); id++) {
+            String docno = idMap.get(id);
+            if (docno == null) {
+                throw new IOException(String.format("idMapping.txt has no document with internal id %d", id));
+            }
+            docnos.add(docno);
+            documentLengths[id] = documentLengthMap.get(docno);
+        }
+
+        List<String> terms = new ArrayList<>();
+        for (int termID = 0; termID < lexiconIdToString.size(); termID++) {
+            terms.add(lexiconIdToString.get(termID));
+        }
+
+        BinaryIndexWriter writer = new BinaryIndexWriter(indexedDataPath + "/" + BinaryIndex.FILE_NAME, docnos, documentLengths);
+        if (Files.exists(Paths.get(indexedDataPath, PostingsFile.FILE_NAME))) {
+            PostingsFile.readTerms(indexedDataPath + "/" + PostingsFile.FILE_NAME, writer);
+        } else {
+            InvertedIndex invIndex = PostingsFile.readInvertedIndex(indexedDataPath);
+            for (int termID = 0; termID < invIndex.numTerms(); termID++) {
+                PostingsList postings = invIndex.get(termID);
+                if (postings != null) {
+                    writer.accept(termID, postings);
+                }
+            }
+        }
+        writer.close(terms);
+    }
+
+    private static <K, V> HashMap<K, V> readMap(String file) throws IOException, ClassNotFoundException {
+        try (FileInputStream fis = new FileInputStream(file);
+             ObjectInputStream ois = new ObjectInputStream(fis)) {
+            @SuppressWarnings("unchecked")
+            HashMap<K, V> map = (HashMap<K, V>) ois.readObject();
+            return map;
+        }
+    }
+}
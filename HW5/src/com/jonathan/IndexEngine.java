@@ -7,10 +7,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Month;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
 
 import static com.jonathan.PorterStemmer.stem;
@@ -19,16 +18,23 @@ public class IndexEngine {
     public static void main(String[] args) throws IOException {
 
         // Input argument checking
-        if (args.length != 3) {
-            System.out.println(String.format("ERROR: Wrong number of arguments passed in! Expected: 2. Received: %d", args.length));
+        if (args.length < 3) {
+            System.out.println(String.format("ERROR: Wrong number of arguments passed in! Expected: 3. Received: %d", args.length));
             System.out.println("First parameter: path to the latimes.gz file.");
             System.out.println("Second parameter: output directory path to save the indexed data");
             System.out.println("Third Parameter: use of porter stemmer. (True/False)");
+            System.out.println("Optional: --threads=N to parse documents on N worker threads");
+            System.out.println("Optional: --memory-budget=MB to flush postings to disk and merge them at the end (SPIMI)");
+            System.out.println("Optional: --legacy-docs to also save each document to its own file under YY/MM/DD");
+            System.out.println("Optional: --impacts to also write the impact ordered postings used for score at a time search");
+            System.out.println("Optional: --sentences to also write the sentences and token ids used for query biased summaries");
+            System.out.println("Optional: --positions to also write the positions of every token, used for phrase queries");
             System.exit(1);
         }
         String inputFile = args[0];
         String outputPath = args[1];
         String porterStemmerString = args[2];
+        HashMap<String, String> options = parseOptions(args, 3, "threads", "memory-budget", "legacy-docs", "impacts", "sentences", "positions");
 
         Path outputDirectory = Paths.get(outputPath);
         if (Files.exists(outputDirectory)) {
@@ -37,6 +43,8 @@ public class IndexEngine {
         }
 
         boolean stem = porterStemmerString.equals("True");
+        int numThreads = Integer.parseInt(options.getOrDefault("threads", "0"));
+        boolean legacyDocs = options.getOrDefault("legacy-docs", "False").equals("True");
 
         Files.createDirectory(outputDirectory);
 
@@ -55,142 +63,102 @@ public class IndexEngine {
             e.printStackTrace();
         }
 
-        String txt = "";
-        StringBuffer doc = new StringBuffer();
-        int id = 0;
-        HashMap<Integer, String> idMap = new HashMap<>();
-        HashMap<String, String> metadata = new HashMap<>();
-
-        HashMap<String, Integer> lexicon = new HashMap<>();
-        HashMap<Integer, String> lexiconIdToString = new HashMap<>();
-        HashMap<Integer, List<Integer>> invIndex = new HashMap<>();
-        HashMap<String, Integer> documentLength = new HashMap<>();
-
-        File metadataPath = new File(outputPath + "/metadata.txt");
-        FileWriter metadataWriter = new FileWriter(metadataPath, StandardCharsets.UTF_8);
-
-        // Reading file line by line
-        while ((txt = br.readLine()) != null) {
-            doc.append(txt+"\n");
-
-            // Process the doc when the </DOC> is reached
-            if (txt.contains("</DOC>")) {
-                // Inserting all metadata into a hashmap
-                metadata.put("docno", getDocNo(doc));
-                metadata.put("id", Integer.toString(id));
-                metadata.put("headline", getHeadline(doc));
-                metadata.put("date", getFormattedDate(metadata.get("docno")));
-
-                // Determining tokens
-                List<String> tokens = new ArrayList<>();
-                tokenize(metadata.get("headline"), tokens, stem);
-                tokenize(getText(doc), tokens, stem);
-                tokenize(getGraphic(doc), tokens, stem);
-                metadata.put("documentLength", Integer.toString(tokens.size()));
-                documentLength.put(metadata.get("docno"), tokens.size());
-
-                List<Integer> tokenIDs = convertTokensToIDs(tokens, lexicon, lexiconIdToString);
-                HashMap<Integer, Integer> wordCounts = countWords(tokenIDs);
-
-                addToPostings(wordCounts, id, invIndex);
-
-                // Save metadata into its own doc
-                saveMetadata(metadataWriter, metadata);
-
-                metadata.put("rawDocument", doc.toString());
-
-                // Save each doc into its own file
-                saveDocument(outputPath, metadata);
-
-                // Create the mapping of id to docno
-                idMap.put(id, metadata.get("docno"));
+        SpimiIndexer spimi = null;
+        if (options.containsKey("memory-budget")) {
+            long budgetBytes = Long.parseLong(options.get("memory-budget")) * 1024 * 1024;
+            spimi = new SpimiIndexer(budgetBytes, outputDirectory.resolve("spimi-runs"));
+        }
+        IndexBuilder builder = new IndexBuilder(outputPath, spimi);
+
+        if (numThreads > 0) {
+            new IndexPipeline(numThreads, stem, outputPath, legacyDocs).run(br, builder);
+        } else {
+            String txt = "";
+            StringBuffer doc = new StringBuffer();
+            DocumentScanner scanner = new DocumentScanner();
+            TermTokenizer tokenizer = new TermTokenizer(stem, builder);
+            int id = 0;
+
+            // Reading file line by line
+            while ((txt = br.readLine()) != null) {
+                doc.append(txt+"\n");
+
+                // Process the doc when the </DOC> is reached
+                if (txt.contains("</DOC>")) {
+                    ParsedDocument parsedDocument = ParsedDocument.parse(id, doc, scanner, tokenizer, true);
+                    builder.addDocument(parsedDocument);
+
+                    // Save each doc into its own file
+                    if (legacyDocs) {
+                        saveDocument(outputPath, parsedDocument);
+                    }
 
-                metadata.clear();
-                doc.delete(0, doc.length());
-                id++;
+                    doc.delete(0, doc.length());
+                    id++;
+                }
             }
         }
 
         br.close();
-        metadataWriter.close();
         reader.close();
         fis.close();
         gzis.close();
 
-        // Save the id to docno mapping to a file
-        writeMapToFile(idMap, outputPath + "/idMapping.txt");
-        writeMapToFile(lexicon, outputPath + "/lexicon.txt");
-        writeMapToFile(lexiconIdToString, outputPath + "/lexiconIdToString.txt");
-        writeMapToFile(invIndex, outputPath + "/invIndex.txt");
-        writeMapToFile(documentLength, outputPath + "/documentLength.txt");
-    }
-
-    // General function to save hashmap to a file
-    public static void writeMapToFile(HashMap<?,?> map, String outputPath) {
-        try {
-            FileOutputStream fos = new FileOutputStream(outputPath);
-            ObjectOutputStream oos = new ObjectOutputStream(fos);
-            oos.writeObject(map);
-            oos.close();
-            fos.close();
+        // Save the id to docno mapping, lexicon and inverted index to files
+        builder.close();
+        if (options.containsKey("impacts")) {
+            ImpactIndexWriter.write(outputPath);
+        }
+        if (options.containsKey("sentences")) {
+            SentenceStoreWriter.write(outputPath);
         }
-        catch (Exception e) {
-            System.out.println(String.format("ERROR: Unable to write to %s", outputPath));
+        if (options.containsKey("positions")) {
+            PositionsIndexWriter.write(outputPath, stem);
         }
+    }
 
+    // Parse the "--name=value" options that follow the positional arguments
+    public static HashMap<String, String> parseOptions(String[] args, int firstOption, String... validOptions) {
+        HashMap<String, String> options = new HashMap<>();
+        List<String> valid = Arrays.asList(validOptions);
+        for (int i = firstOption; i < args.length; i++) {
+            String arg = args[i];
+            int equals = arg.indexOf('=');
+            String name = equals < 0 ? arg.substring(2) : arg.substring(2, equals);
+            if (!arg.startsWith("--") || !valid.contains(name)) {
+                System.out.println(String.format("ERROR: Unknown option %s. Valid options: --%s", arg, String.join(", --", valid)));
+                System.exit(1);
+            }
+            options.put(name, equals < 0 ? "True" : arg.substring(equals + 1));
+        }
+        return options;
     }
 
     // Return the docno from the text
     public static String getDocNo(StringBuffer doc) {
-        Pattern docnoRegex = Pattern.compile("<DOCNO>(.+?)</DOCNO>");
-        Matcher docnoMatcher = docnoRegex.matcher(doc);
-        String docno = "";
-        if (docnoMatcher.find()) {
-            docno = docnoMatcher.group(1).replaceAll("\\s", "");
-        }
-        return docno;
+        return getField(doc, DocumentScanner.DOCNO);
     }
 
-    // Return the headline from the text
+    // Return the headline from the text, without any inner tags (ex. <P></P>)
     public static String getHeadline(StringBuffer doc) {
-        Pattern headlineRegex = Pattern.compile("<HEADLINE>([\\s\\S]*?)</HEADLINE>");
-        Matcher headlineMatcher = headlineRegex.matcher(doc);
-        String headline = "";
-        if(headlineMatcher.find()) headline = headlineMatcher.group(1);
-
-        // Remove all inner tags from the headline (ex. <P></P>)
-        String strippedHeadline = headline.replaceAll("<[^>]*>", "")
-                .replaceAll("\\s+", " ").trim();
-
-        return strippedHeadline;
+        return getField(doc, DocumentScanner.HEADLINE);
     }
 
-    // Return the text within the <TEXT></TEXT> tags
+    // Return the text within the <TEXT></TEXT> tags, without any inner tags
     public static String getText(StringBuffer doc) {
-        Pattern textRegex = Pattern.compile("<TEXT>([\\s\\S]*?)</TEXT>");
-        Matcher textMatcher = textRegex.matcher(doc);
-        String text = "";
-
-        if (textMatcher.find()) text = textMatcher.group(1);
-
-        // Remove all inner tags from the text (ex. <P></P>)
-        String strippedText = text.replaceAll("<[^>]*>", "")
-                .replaceAll("\\s+", " ").trim();
-        return strippedText;
+        return getField(doc, DocumentScanner.TEXT);
     }
 
-    // Return the text within the <GRAPHIC></GRAPHIC> tags
+    // Return the text within the <GRAPHIC></GRAPHIC> tags, without any inner tags
     public static String getGraphic(StringBuffer doc) {
-        Pattern graphicRegex = Pattern.compile("<GRAPHIC>([\\s\\S]*?)</GRAPHIC>");
-        Matcher graphicMatcher = graphicRegex.matcher(doc);
-        String graphic = "";
-        if (graphicMatcher.find()) graphic = graphicMatcher.group(1);
-
-        // Remove all inner tags from the text (ex. <P></P>)
-        String strippedGraphic = graphic.replaceAll("<[^>]*>", "")
-                .replaceAll("\\s+", " ").trim();
+        return getField(doc, DocumentScanner.GRAPHIC);
+    }
 
-        return strippedGraphic;
+    // Scans the whole document for one field. Use a DocumentScanner directly when more than one field is needed
+    private static String getField(StringBuffer doc, int field) {
+        DocumentScanner scanner = new DocumentScanner();
+        scanner.scan(doc);
+        return scanner.getField(field);
     }
 
     // Return a hashmap containing the month, day, and year as keys
@@ -236,11 +204,7 @@ public class IndexEngine {
         output.getParentFile().mkdirs();
         try {
             FileWriter writer = new FileWriter(output, StandardCharsets.UTF_8);
-            writer.write(String.format("docno: %s\n", metadata.get("docno")));
-            writer.write(String.format("internal id: %s\n", metadata.get("id")));
-            writer.write(String.format("date: %s\n", metadata.get("date")));
-            writer.write(String.format("headline: %s\n", metadata.get("headline")));
-            writer.write(String.format("raw document: \n%s\n", metadata.get("rawDocument")));
+            writer.write(formatDocument(metadata));
             writer.close();
 
         } catch (IOException e) {
@@ -249,6 +213,33 @@ public class IndexEngine {
         }
     }
 
+    // Save a parsed document and its raw text to the indexed data location
+    public static void saveDocument(String outputPath, ParsedDocument doc) {
+        saveDocument(outputPath, getDocumentMetadata(doc));
+    }
+
+    // The metadata and raw document that are stored for each document
+    public static HashMap<String, String> getDocumentMetadata(ParsedDocument doc) {
+        HashMap<String, String> metadata = new HashMap<>();
+        metadata.put("docno", doc.getDocno());
+        metadata.put("id", Integer.toString(doc.getId()));
+        metadata.put("date", doc.getDate());
+        metadata.put("headline", doc.getHeadline());
+        metadata.put("rawDocument", doc.getRawDocument());
+        return metadata;
+    }
+
+    // The stored form of a document, which is what GetDoc prints
+    public static String formatDocument(HashMap<String,String> metadata) {
+        StringBuilder sb = new StringBuilder(metadata.get("rawDocument").length() + 128);
+        sb.append("docno: ").append(metadata.get("docno")).append("\n");
+        sb.append("internal id: ").append(metadata.get("id")).append("\n");
+        sb.append("date: ").append(metadata.get("date")).append("\n");
+        sb.append("headline: ").append(metadata.get("headline")).append("\n");
+        sb.append("raw document: \n").append(metadata.get("rawDocument")).append("\n");
+        return sb.toString();
+    }
+
     // Tokenize a string and add tokens to a list
     public static void tokenize(String text, List<String> tokens, boolean stem) {
         String lowerCaseText = text.toLowerCase();
@@ -276,48 +267,4 @@ public class IndexEngine {
             }
         }
     }
-
-    // Get tokenIDs and update lexicon
-    public static List<Integer> convertTokensToIDs(List<String> tokens, HashMap<String, Integer> lexicon, HashMap<Integer, String> lexiconIdToString) {
-        List<Integer> tokenIDs = new ArrayList<>();
-        for (String token:tokens) {
-            if (lexicon.containsKey(token)) {
-                tokenIDs.add(lexicon.get(token));
-            } else {
-                int id = lexicon.size();
-                lexicon.put(token, id);
-                lexiconIdToString.put(id, token);
-                tokenIDs.add(id);
-            }
-        }
-        return tokenIDs;
-    }
-
-    // Count word occurrences
-    public static HashMap<Integer, Integer> countWords(List<Integer> tokenIDs) {
-        HashMap<Integer, Integer> wordCounts = new HashMap<>();
-        for (int id : tokenIDs) {
-            Integer count = wordCounts.get(id);
-            if (count == null) {
-                wordCounts.put(id, 1);
-            } else {
-                wordCounts.put(id, count+1);
-            }
-        }
-        return wordCounts;
-    }
-
-    // Add docid and word count to postings list and update inverted index
-    public static void addToPostings(HashMap<Integer, Integer> wordCounts, int docID, HashMap<Integer, List<Integer>> invIndex) {
-        for (int termID : wordCounts.keySet()) {
-            int count = wordCounts.get(termID);
-            List<Integer> postings = new ArrayList<>();
-            if (invIndex.containsKey(termID)) {
-                postings = invIndex.get(termID);
-            }
-            postings.add(docID);
-            postings.add(count);
-            invIndex.put(termID, postings);
-        }
-    }
 }
@@ -0,0 +1,149 @@
+package com.jonathan;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Multi-threaded version of the IndexEngine loop. One reader thread splits the collection at </DOC>
+// boundaries, a pool of workers parses, tokenizes and counts each document, and the calling thread
+// merges the parsed documents into the IndexBuilder in input order so that the output is the same
+// as a single threaded build.
+public class IndexPipeline {
+    // Number of documents each worker may have queued up ahead of the merger
+    private static final int DOCS_IN_FLIGHT_PER_WORKER = 64;
+
+    // Marks the end of the collection in the queue of parsed documents
+    private static final Future<ParsedDocument> END_OF_COLLECTION = CompletableFuture.completedFuture(null);
+
+    private final int _numThreads;
+    private final boolean _stem;
+    private final String _outputPath;
+    private final boolean _legacyDocs;
+
+    private final AtomicLong readerNanos = new AtomicLong();
+    private final AtomicLong workerNanos = new AtomicLong();
+    private long mergerNanos = 0;
+
+    private volatile Exception readerError = null;
+
+    // Each worker thread reuses its own scanner, and tokenizes against its own local lexicon
+    private final ThreadLocal<DocumentScanner> scanners = ThreadLocal.withInitial(DocumentScanner::new);
+    private final ThreadLocal<TermTokenizer> tokenizers;
+
+    public IndexPipeline(int numThreads, boolean stem, String outputPath, boolean legacyDocs) {
+        this._numThreads = numThreads;
+        this._stem = stem;
+        this._outputPath = outputPath;
+        this._legacyDocs = legacyDocs;
+        this.tokenizers = ThreadLocal.withInitial(() -> new TermTokenizer(stem, new LocalLexicon()));
+    }
+
+    // Read every document from br and add it to the builder, returning the number of documents indexed
+    public int run(BufferedReader br, IndexBuilder builder) throws IOException {
+        long startTime = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(_numThreads);
+        BlockingQueue<Future<ParsedDocument>> parsed = new ArrayBlockingQueue<>(_numThreads * DOCS_IN_FLIGHT_PER_WORKER);
+
+        Thread reader = new Thread(() -> {
+            try {
+                readDocuments(br, workers, parsed);
+            } catch (IOException | RuntimeException e) {
+                readerError = e;
+            } catch (InterruptedException e) {
+                // The merger has given up, so there is nobody left to read for
+            }
+        }, "IndexPipeline-reader");
+        reader.start();
+
+        try {
+            // Merge the documents back in the order that the reader submitted them
+            Future<ParsedDocument> next;
+            while ((next = takeNext(parsed)) != END_OF_COLLECTION) {
+                ParsedDocument doc = next.get();
+                long mergeStart = System.nanoTime();
+                builder.addDocument(doc);
+                mergerNanos += System.nanoTime() - mergeStart;
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to index document", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while indexing", e);
+        } finally {
+            reader.interrupt();
+            workers.shutdownNow();
+        }
+
+        printStageThroughput(builder.numDocuments(), System.nanoTime() - startTime);
+        return builder.numDocuments();
+    }
+
+    // Split the collection into documents and hand each one off to a worker
+    private void readDocuments(BufferedReader br, ExecutorService workers, BlockingQueue<Future<ParsedDocument>> parsed)
+            throws IOException, InterruptedException {
+        String txt;
+        StringBuffer doc = new StringBuffer();
+        int id = 0;
+        long readStart = System.nanoTime();
+        while ((txt = br.readLine()) != null) {
+            doc.append(txt + "\n");
+
+            if (txt.contains("</DOC>")) {
+                final int docID = id;
+                final StringBuffer rawDocument = doc;
+                readerNanos.addAndGet(System.nanoTime() - readStart);
+                parsed.put(workers.submit(() -> processDocument(docID, rawDocument)));
+                readStart = System.nanoTime();
+
+                doc = new StringBuffer();
+                id++;
+            }
+        }
+        readerNanos.addAndGet(System.nanoTime() - readStart);
+        parsed.put(END_OF_COLLECTION);
+    }
+
+    // Work done for each document on the worker threads
+    private ParsedDocument processDocument(int id, StringBuffer rawDocument) {
+        long start = System.nanoTime();
+        ParsedDocument doc = ParsedDocument.parse(id, rawDocument, scanners.get(), tokenizers.get(), false);
+        if (_legacyDocs) {
+            IndexEngine.saveDocument(_outputPath, doc);
+        }
+        workerNanos.addAndGet(System.nanoTime() - start);
+        return doc;
+    }
+
+    // Wait for the next parsed document, giving up if the reader thread fails
+    private Future<ParsedDocument> takeNext(BlockingQueue<Future<ParsedDocument>> parsed) throws IOException, InterruptedException {
+        Future<ParsedDocument> next;
+        while ((next = parsed.poll(100, TimeUnit.MILLISECONDS)) == null) {
+            if (readerError != null) {
+                throw new IOException("Unable to read collection", readerError);
+            }
+        }
+        return next;
+    }
+
+    // Docs/sec of each stage, based on the time that stage spent doing work rather than waiting
+    private void printStageThroughput(int numDocs, long wallNanos) {
+        System.out.printf("Indexed %d documents in %.2f seconds (%.0f docs/sec) using %d worker threads%n",
+                numDocs, wallNanos / 1e9, docsPerSecond(numDocs, wallNanos), _numThreads);
+        System.out.printf("  reader: %.0f docs/sec%n", docsPerSecond(numDocs, readerNanos.get()));
+        System.out.printf("  workers: %.0f docs/sec per thread, %.0f docs/sec combined%n",
+                docsPerSecond(numDocs, workerNanos.get()), docsPerSecond(numDocs, workerNanos.get()) * _numThreads);
+        System.out.printf("  merger: %.0f docs/sec%n", docsPerSecond(numDocs, mergerNanos));
+    }
+
+    private static double docsPerSecond(int numDocs, long nanos) {
+        return nanos == 0 ? 0 : numDocs / (nanos / 1e9);
+    }
+}
@@ -0,0 +1,112 @@
+package com.jonathan;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+// Times the queries of a queries file with the most postings scored on one thread by calculateBM25 against
+// ParallelBM25 splitting them into docid ranges over a ForkJoinPool, and checks that both give the same top k.
+public class IntraQueryBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int WARM_UP_ROUNDS = 3;
+    private static final int RESULTS = 1000;
+
+    public static void main(String[] args) throws Exception {
+
+        // Input argument checking
+        if (args.length < 2) {
+            System.out.printf("ERROR: Wrong number of arguments passed in! Expected: 2. Received: %d%n", args.length);
+            System.out.println("First parameter: path to the indexed data");
+            System.out.println("Second parameter: path to the queries file");
+            System.out.println("Optional: --threads=N for the ForkJoinPool (default: number of cores)");
+            System.out.println("Optional: --queries=N to time the N queries with the most postings (default: 10)");
+            System.out.println("Optional: --postings-per-task=N to split ranges with more postings than N (default: 100000)");
+            System.exit(1);
+        }
+        HashMap<String, String> options = IndexEngine.parseOptions(args, 2, "threads", "queries", "postings-per-task");
+        int numThreads = Integer.parseInt(options.getOrDefault("threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+        int numQueries = Integer.parseInt(options.getOrDefault("queries", "10"));
+        long postingsPerTask = Long.parseLong(options.getOrDefault("postings-per-task", Long.toString(ParallelBM25.DEFAULT_POSTINGS_PER_TASK)));
+
+        BinaryIndex index = BinaryIndex.open(args[0]);
+        List<String> queryIds = new ArrayList<>();
+        List<List<String>> queries = new ArrayList<>();
+        List<Long> postings = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(args[1]))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                List<String> queryTokens = new ArrayList<>();
+                IndexEngine.tokenize(br.readLine(), queryTokens, false);
+                long numPostings = 0;
+                for (String token : queryTokens) {
+                    int termID = index.termID(token);
+                    numPostings += termID < 0 ? 0 : index.documentFrequency(termID);
+                }
+                queryIds.add(line);
+                queries.add(queryTokens);
+                postings.add(numPostings);
+            }
+        }
+
+        // The queries with the most postings, most first
+        Integer[] longest = new Integer[queries.size()];
+        for (int q = 0; q < longest.length; q++) {
+            longest[q] = q;
+        }
+        Arrays.sort(longest, (lhs, rhs) -> Long.compare(postings.get(rhs), postings.get(lhs)));
+        longest = Arrays.copyOf(longest, Math.min(numQueries, longest.length));
+
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            for (int q : longest) {
+                BM25.calculateBM25(queries.get(q), index, RESULTS);
+                ParallelBM25.calculateBM25(queries.get(q), index, RESULTS, pool, postingsPerTask, null);
+            }
+        }
+
+        System.out.printf("Median of %d rounds, top %d documents, %d threads, ranges of up to %d postings%n",
+                ROUNDS, RESULTS, numThreads, postingsPerTask);
+        System.out.printf("%-8s %10s %12s %12s %8s %6s%n", "query", "postings", "single ms", "ranges ms", "speedup", "same");
+        double singleTotal = 0;
+        double rangesTotal = 0;
+        for (int q : longest) {
+            double[] single = new double[ROUNDS];
+            double[] ranges = new double[ROUNDS];
+            RankedList expected = null;
+            RankedList actual = null;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                expected = BM25.calculateBM25(queries.get(q), index, RESULTS);
+                single[round] = (System.nanoTime() - start) / 1e6;
+
+                start = System.nanoTime();
+                actual = ParallelBM25.calculateBM25(queries.get(q), index, RESULTS, pool, postingsPerTask, null);
+                ranges[round] = (System.nanoTime() - start) / 1e6;
+            }
+            double singleMedian = Benchmarks.median(single);
+            double rangesMedian = Benchmarks.median(ranges);
+            singleTotal += singleMedian;
+            rangesTotal += rangesMedian;
+            System.out.printf("%-8s %10d %12.3f %12.3f %7.2fx %6s%n", queryIds.get(q), postings.get(q),
+                    singleMedian, rangesMedian, singleMedian / rangesMedian, sameRanking(expected, actual) ? "yes" : "NO");
+        }
+        System.out.printf("%-8s %10s %12.3f %12.3f %7.2fx%n", "total", "", singleTotal, rangesTotal, singleTotal / rangesTotal);
+        pool.shutdown();
+    }
+
+    private static boolean sameRanking(RankedList expected, RankedList actual) {
+        if (expected.size() != actual.size()) {
+            return false;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (expected.docID(i) != actual.docID(i) || expected.score(i) != actual.score(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
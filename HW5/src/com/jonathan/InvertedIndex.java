@@ -0,0 +1,92 @@
+package com.jonathan;
+
+import java.util.Arrays;
+
+// Inverted index as an array of postings lists indexed by term id. Term ids are handed out densely
+// from 0 by the lexicon, so this replaces the HashMap<Integer, List<Integer>> of boxed postings.
+public class InvertedIndex implements PostingsSource {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private PostingsList[] termPostings;
+    private int numTerms;
+
+    public InvertedIndex() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public InvertedIndex(int capacity) {
+        this.termPostings = new PostingsList[Math.max(capacity, 1)];
+        this.numTerms = 0;
+    }
+
+    // One past the largest term id in the index
+    public int numTerms() {
+        return numTerms;
+    }
+
+    // Returns null if the term has no postings
+    @Override
+    public PostingsList get(int termID) {
+        return termID < numTerms ? termPostings[termID] : null;
+    }
+
+    public void put(int termID, PostingsList postings) {
+        ensureCapacity(termID);
+        termPostings[termID] = postings;
+        numTerms = Math.max(numTerms, termID + 1);
+    }
+
+    // Add a posting, returning true if this is the first posting of the term
+    public boolean add(int termID, int docID, int count) {
+        PostingsList postings = get(termID);
+        boolean newTerm = postings == null;
+        if (newTerm) {
+            postings = new PostingsList();
+            put(termID, postings);
+        }
+        postings.add(docID, count);
+        return newTerm;
+    }
+
+    // Drop every postings list but keep the term id space, used after a SPIMI run is flushed
+    public void clear() {
+        Arrays.fill(termPostings, 0, numTerms, null);
+    }
+
+    // Number of terms that have postings
+    public int numTermsWithPostings() {
+        int count = 0;
+        for (int termID = 0; termID < numTerms; termID++) {
+            if (termPostings[termID] != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        for (int termID = 0; termID < numTerms; termID++) {
+            if (termPostings[termID] != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Approximate heap used by the index
+    public long heapBytes() {
+        long bytes = 16 + 16 + 4L * termPostings.length;
+        for (int termID = 0; termID < numTerms; termID++) {
+            if (termPostings[termID] != null) {
+                bytes += termPostings[termID].heapBytes();
+            }
+        }
+        return bytes;
+    }
+
+    private void ensureCapacity(int termID) {
+        if (termID >= termPostings.length) {
+            termPostings = Arrays.copyOf(termPostings, Math.max(termID + 1, termPostings.length * 2));
+        }
+    }
+}
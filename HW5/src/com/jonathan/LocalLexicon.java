@@ -0,0 +1,32 @@
+package com.jonathan;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// Term ids that are only meaningful to one TermTokenizer, used where documents are tokenized away from
+// the real lexicon (ex. on the IndexPipeline workers) and the terms are mapped to lexicon ids later on.
+public class LocalLexicon implements TermTokenizer.TermResolver {
+    private final HashMap<String, Integer> termIDs = new HashMap<>();
+    private final List<String> terms = new ArrayList<>();
+
+    @Override
+    public int resolve(String term) {
+        Integer termID = termIDs.get(term);
+        if (termID == null) {
+            termID = terms.size();
+            termIDs.put(term, termID);
+            terms.add(term);
+        }
+        return termID;
+    }
+
+    @Override
+    public String term(int termID) {
+        return terms.get(termID);
+    }
+
+    public int size() {
+        return terms.size();
+    }
+}
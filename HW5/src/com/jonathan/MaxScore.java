@@ -0,0 +1,99 @@
+package com.jonathan;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.jonathan.PostingsIterator.NO_MORE_DOCS;
+
+// Document at a time BM25 with MaxScore (Turtle and Flood, 1995). The query terms are put in order of their
+// upper bounds, and the terms with the smallest bounds that together cannot reach the lowest score kept are
+// non-essential: a document that only has those terms cannot make the top k. Only the postings of the
+// essential terms are walked to find documents, and the non-essential terms are only looked up for those
+// documents, from the largest bound down, until what is left of the bounds cannot lift the document into the
+// top k. The documents that get that far are scored the same way as calculateBM25 scores them, so the top k
+// is the same.
+public class MaxScore {
+    // Slack on partial scores, which are added up in another order than the scores
+    private static final double PARTIAL_SCORE_SLACK = 1e-9;
+
+    public static RankedList calculateBM25(List<String> queryTokens, BinaryIndex index, PostingsSource postingsSource, int k, QueryStats stats) {
+        BM25Query query = new BM25Query(queryTokens, index, postingsSource);
+        TopK topK = new TopK(k, index::docno);
+        int numTerms = query.numTerms();
+
+        // Terms in order of their upper bounds, and the sum of the bounds of each term and those before it
+        Integer[] byBound = new Integer[numTerms];
+        for (int term = 0; term < numTerms; term++) {
+            query.postings(term).nextDoc();
+            byBound[term] = term;
+        }
+        Arrays.sort(byBound, Comparator.comparingDouble(query::upperBound));
+        int[] terms = new int[numTerms];
+        double[] cumulativeBounds = new double[numTerms];
+        double bound = 0;
+        for (int i = 0; i < numTerms; i++) {
+            terms[i] = byBound[i];
+            bound += query.upperBound(terms[i]);
+            cumulativeBounds[i] = bound;
+        }
+
+        // terms[firstEssential] on are essential
+        int firstEssential = 0;
+        double threshold = Double.NEGATIVE_INFINITY;
+        while (firstEssential < numTerms) {
+            int doc = NO_MORE_DOCS;
+            for (int i = firstEssential; i < numTerms; i++) {
+                doc = Math.min(doc, query.postings(terms[i]).docID());
+            }
+            if (doc == NO_MORE_DOCS) {
+                break;
+            }
+
+            double partialScore = 0;
+            for (int i = firstEssential; i < numTerms; i++) {
+                if (query.postings(terms[i]).docID() == doc) {
+                    partialScore += query.termScore(terms[i]);
+                    if (stats != null) {
+                        stats.postingsScored++;
+                    }
+                }
+            }
+
+            // Look the document up in the non-essential terms while it can still make the top k
+            boolean candidate = true;
+            for (int i = firstEssential - 1; i >= 0; i--) {
+                if (partialScore + Math.abs(partialScore) * PARTIAL_SCORE_SLACK + cumulativeBounds[i] < threshold) {
+                    candidate = false;
+                    break;
+                }
+                if (query.postings(terms[i]).advance(doc) == doc) {
+                    partialScore += query.termScore(terms[i]);
+                    if (stats != null) {
+                        stats.postingsScored++;
+                    }
+                }
+            }
+
+            if (candidate) {
+                topK.add(doc, query.score(doc, null));
+                if (stats != null) {
+                    stats.documentsScored++;
+                }
+                if (topK.isFull() && topK.minScore() > threshold) {
+                    threshold = topK.minScore();
+                    while (firstEssential < numTerms && cumulativeBounds[firstEssential] < threshold) {
+                        firstEssential++;
+                    }
+                }
+            }
+
+            for (int i = firstEssential; i < numTerms; i++) {
+                if (query.postings(terms[i]).docID() == doc) {
+                    query.postings(terms[i]).nextDoc();
+                }
+            }
+        }
+        return topK.ranked();
+    }
+}
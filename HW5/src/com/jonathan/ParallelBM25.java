@@ -0,0 +1,125 @@
+package com.jonathan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+// Term at a time BM25 of a single query on several cores. The docid space is split in halves for as long as
+// a range is expected to hold more than postingsPerTask postings of the query terms, and the ranges are
+// scored as ForkJoin tasks, each into its own accumulator and top k heap, which are merged at the end. A
+// query with fewer postings than that is not split and is scored on the calling thread, so short queries pay
+// nothing for it. Each document is scored in one range in query token order, so the top k is the same as
+// calculateBM25 gives.
+public class ParallelBM25 {
+    // Postings a range should have before it is worth splitting
+    public static final long DEFAULT_POSTINGS_PER_TASK = 100_000;
+
+    public static RankedList calculateBM25(List<String> queryTokens, BinaryIndex index, int k, ForkJoinPool pool,
+                                           long postingsPerTask, QueryStats stats) {
+        Query query = new Query(queryTokens, index);
+        if (query.numPostings < 2 * postingsPerTask) {
+            return BM25.calculateBM25(queryTokens, index, null, k, stats);
+        }
+
+        List<RankedList> ranges = pool.invoke(new RangeTask(query, index, k, 0, index.numDocuments(), postingsPerTask));
+        TopK topK = new TopK(k, index::docno);
+        for (RankedList range : ranges) {
+            for (int i = 0; i < range.size(); i++) {
+                topK.add(range.docID(i), range.score(i));
+            }
+        }
+        if (stats != null) {
+            stats.postingsScored += query.numPostings;
+            stats.documentsScored += query.documentsScored.sum();
+        }
+        return topK.ranked();
+    }
+
+    // The query tokens that are in the lexicon, in query order, with their BM25 query weights
+    private static class Query {
+        final List<Integer> termIDs = new ArrayList<>();
+        final List<Double> queryTfs = new ArrayList<>();
+        final List<Double> idfs = new ArrayList<>();
+        final double[] lengthNorms;
+        final long numPostings;
+        final LongAdder documentsScored = new LongAdder();
+
+        Query(List<String> queryTokens, BinaryIndex index) {
+            int N = index.numDocuments();
+            lengthNorms = index.bm25LengthNorms();
+            long postings = 0;
+            for (String token : queryTokens) {
+                int termID = index.termID(token);
+                if (termID < 0) {
+                    continue;
+                }
+                int n_i = index.documentFrequency(termID);
+                termIDs.add(termID);
+                queryTfs.add(BM25.queryTf(Collections.frequency(queryTokens, token)));
+                idfs.add(BM25.idf(N, n_i));
+                postings += n_i;
+            }
+            numPostings = postings;
+        }
+    }
+
+    // Scores the documents from start up to end, or splits them in two
+    private static class RangeTask extends RecursiveTask<List<RankedList>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Query query;
+        private final BinaryIndex index;
+        private final int k;
+        private final int start;
+        private final int end;
+        private final long postingsPerTask;
+
+        RangeTask(Query query, BinaryIndex index, int k, int start, int end, long postingsPerTask) {
+            this.query = query;
+            this.index = index;
+            this.k = k;
+            this.start = start;
+            this.end = end;
+            this.postingsPerTask = postingsPerTask;
+        }
+
+        @Override
+        protected List<RankedList> compute() {
+            // Assumes the postings are spread evenly over the docids
+            long expectedPostings = query.numPostings * (end - start) / Math.max(index.numDocuments(), 1);
+            if (expectedPostings > postingsPerTask && end - start > 1) {
+                int middle = (start + end) >>> 1;
+                RangeTask left = new RangeTask(query, index, k, start, middle, postingsPerTask);
+                RangeTask right = new RangeTask(query, index, k, middle, end, postingsPerTask);
+                left.fork();
+                List<RankedList> ranges = new ArrayList<>(right.compute());
+                ranges.addAll(left.join());
+                return ranges;
+            }
+            return List.of(score());
+        }
+
+        private RankedList score() {
+            ScoreAccumulator docScore = new ScoreAccumulator(end - start);
+            for (int t = 0; t < query.termIDs.size(); t++) {
+                double queryTf = query.queryTfs.get(t);
+                double idf = query.idfs.get(t);
+                PostingsIterator postings = index.iterator(query.termIDs.get(t));
+                for (int docid = postings.advance(start); docid < end; docid = postings.nextDoc()) {
+                    docScore.add(docid - start, BM25.score(postings.count(), query.lengthNorms[docid], queryTf, idf));
+                }
+            }
+            query.documentsScored.add(docScore.size());
+
+            TopK topK = new TopK(k, index::docno);
+            for (int i = 0; i < docScore.size(); i++) {
+                int offset = docScore.docID(i);
+                topK.add(start + offset, docScore.score(offset));
+            }
+            return topK.ranked();
+        }
+    }
+}
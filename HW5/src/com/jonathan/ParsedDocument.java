@@ -0,0 +1,94 @@
+package com.jonathan;
+
+// Everything IndexEngine needs from a single <DOC> apart from the collection wide state. Documents tokenized
+// against the lexicon itself carry lexicon term ids; documents tokenized elsewhere (ex. on a pipeline worker)
+// carry their terms as Strings so that the ids can be assigned once they are merged back in input order.
+public class ParsedDocument {
+
+    // Fields whose tokens are indexed, in the order they are tokenized
+    static final int[] INDEXED_FIELDS = {DocumentScanner.HEADLINE, DocumentScanner.TEXT, DocumentScanner.GRAPHIC};
+
+    private final int _id;
+    private final String _docno;
+    private final String _headline;
+    private final String _date;
+    private final int _length;
+    private final String _rawDocument;
+
+    // Distinct terms in order of first occurrence, as either lexicon ids or Strings, with their counts in the same positions
+    private final int[] _termIDs;
+    private final String[] _terms;
+    private final int[] _counts;
+
+    public ParsedDocument(int id, String docno, String headline, String date, int length, String rawDocument,
+                          int[] termIDs, String[] terms, int[] counts) {
+        this._id = id;
+        this._docno = docno;
+        this._headline = headline;
+        this._date = date;
+        this._length = length;
+        this._rawDocument = rawDocument;
+        this._termIDs = termIDs;
+        this._terms = terms;
+        this._counts = counts;
+    }
+
+    public int getId() {
+        return _id;
+    }
+    public String getDocno() {
+        return _docno;
+    }
+    public String getHeadline() {
+        return _headline;
+    }
+    public String getDate() {
+        return _date;
+    }
+    public int getLength() {
+        return _length;
+    }
+    public String getRawDocument() {
+        return _rawDocument;
+    }
+    // Null unless the document was tokenized against the lexicon
+    public int[] getTermIDs() {
+        return _termIDs;
+    }
+    // Null if the document was tokenized against the lexicon
+    public String[] getTerms() {
+        return _terms;
+    }
+    public int[] getCounts() {
+        return _counts;
+    }
+
+    // Extract the fields of a raw document, tokenize them and count the terms. If lexiconIDs is set the
+    // tokenizer's resolver must be the lexicon, otherwise the terms are kept as Strings
+    public static ParsedDocument parse(int id, StringBuffer doc, DocumentScanner scanner, TermTokenizer tokenizer, boolean lexiconIDs) {
+        scanner.scan(doc);
+        String docno = scanner.getField(DocumentScanner.DOCNO);
+        String headline = scanner.getField(DocumentScanner.HEADLINE);
+        String date = IndexEngine.getFormattedDate(docno);
+
+        tokenizer.startDocument();
+        for (int field : INDEXED_FIELDS) {
+            tokenizer.tokenize(scanner.buffer(), scanner.start(field), scanner.end(field), scanner.isAscii(field));
+        }
+
+        int numTerms = tokenizer.numTerms();
+        int[] termIDs = lexiconIDs ? new int[numTerms] : null;
+        String[] terms = lexiconIDs ? null : new String[numTerms];
+        int[] counts = new int[numTerms];
+        for (int i = 0; i < numTerms; i++) {
+            if (lexiconIDs) {
+                termIDs[i] = tokenizer.termID(i);
+            } else {
+                terms[i] = tokenizer.getResolver().term(tokenizer.termID(i));
+            }
+            counts[i] = tokenizer.count(i);
+        }
+
+        return new ParsedDocument(id, docno, headline, date, tokenizer.length(), doc.toString(), termIDs, terms, counts);
+    }
+}
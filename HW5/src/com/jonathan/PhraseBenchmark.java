@@ -0,0 +1,100 @@
+package com.jonathan;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Times two and three word phrases against the same words as a plain query. The phrases are the first two and
+// the first three words of every query of a queries file, and each is ranked as a quoted phrase with
+// PhraseQuery, as a bag of words term at a time with BM25.calculateBM25, which reads the same postings, and
+// with QueryProcessor.AUTO, which Search uses for queries without phrases. Each is run a few times after warm
+// up rounds and the median is taken, then the median and 95th percentile over the phrases of each length are
+// printed with how many times slower the phrase is than each bag of words.
+public class PhraseBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int RESULTS = 1000;
+
+    public static void main(String[] args) throws Exception {
+
+        // Input argument checking
+        if (args.length != 2) {
+            System.out.printf("ERROR: Wrong number of arguments passed in! Expected: 2. Received: %d%n", args.length);
+            System.out.println("First parameter: path to the indexed data");
+            System.out.println("Second parameter: path to the queries file");
+            System.exit(1);
+        }
+
+        BinaryIndex index = BinaryIndex.open(args[0]);
+        PositionsIndex positions = PositionsIndex.open(args[0], index);
+        if (positions == null) {
+            System.out.printf("ERROR: %s has no %s. Build it with PositionsIndexWriter or IndexEngine --positions%n", args[0], PositionsIndex.FILE_NAME);
+            System.exit(1);
+        }
+
+        List<List<String>> queries = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(args[1]))) {
+            while (br.readLine() != null) {
+                List<String> queryTokens = new ArrayList<>();
+                IndexEngine.tokenize(br.readLine(), queryTokens, false);
+                queries.add(queryTokens);
+            }
+        }
+
+        System.out.printf("Median of %d rounds, top %d documents%n", ROUNDS, RESULTS);
+        System.out.printf("%-6s %8s %10s %14s %14s %14s %10s %10s%n", "words", "phrases", "", "bag taat ms", "bag auto ms", "phrase ms", "vs taat", "vs auto");
+        for (int length = 2; length <= 3; length++) {
+            List<List<String>> words = new ArrayList<>();
+            for (List<String> queryTokens : queries) {
+                if (queryTokens.size() >= length) {
+                    words.add(queryTokens.subList(0, length));
+                }
+            }
+            if (words.isEmpty()) {
+                continue;
+            }
+
+            double[] taatTimes = new double[words.size()];
+            double[] autoTimes = new double[words.size()];
+            double[] phraseTimes = new double[words.size()];
+            for (int q = 0; q < words.size(); q++) {
+                List<String> queryTokens = words.get(q);
+                PhraseQuery phrase = PhraseQuery.parse('"' + String.join(" ", queryTokens) + '"', false);
+                for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+                    Benchmarks.consume(BM25.calculateBM25(queryTokens, index, RESULTS));
+                    Benchmarks.consume(QueryProcessor.AUTO.calculateBM25(queryTokens, index, RESULTS, null));
+                    Benchmarks.consume(phrase.calculateBM25(index, positions, null, RESULTS));
+                }
+
+                double[] taatRounds = new double[ROUNDS];
+                double[] autoRounds = new double[ROUNDS];
+                double[] phraseRounds = new double[ROUNDS];
+                for (int round = 0; round < ROUNDS; round++) {
+                    long start = System.nanoTime();
+                    Benchmarks.consume(BM25.calculateBM25(queryTokens, index, RESULTS));
+                    taatRounds[round] = (System.nanoTime() - start) / 1e6;
+
+                    start = System.nanoTime();
+                    Benchmarks.consume(QueryProcessor.AUTO.calculateBM25(queryTokens, index, RESULTS, null));
+                    autoRounds[round] = (System.nanoTime() - start) / 1e6;
+
+                    start = System.nanoTime();
+                    Benchmarks.consume(phrase.calculateBM25(index, positions, null, RESULTS));
+                    phraseRounds[round] = (System.nanoTime() - start) / 1e6;
+                }
+                taatTimes[q] = Benchmarks.percentile(taatRounds, 50);
+                autoTimes[q] = Benchmarks.percentile(autoRounds, 50);
+                phraseTimes[q] = Benchmarks.percentile(phraseRounds, 50);
+            }
+
+            for (int p : new int[]{50, 95}) {
+                double taat = Benchmarks.percentile(taatTimes, p);
+                double auto = Benchmarks.percentile(autoTimes, p);
+                double phrase = Benchmarks.percentile(phraseTimes, p);
+                System.out.printf("%-6d %8d %10s %14.3f %14.3f %14.3f %9.2fx %9.2fx%n", length, words.size(), "p" + p,
+                        taat, auto, phrase, phrase / taat, phrase / auto);
+            }
+        }
+    }
+}
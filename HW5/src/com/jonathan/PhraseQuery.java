@@ -0,0 +1,223 @@
+package com.jonathan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+// A query in which the words between double quotes are a phrase, which a document only has where they are
+// next to each other in that order. BM25 scores a phrase as one more term: the documents that have it are its
+// postings, the number of times a document has it is its count there, and its idf is that of the number of
+// documents that have it. The words outside of quotes are scored as BM25.calculateBM25 scores them, so a
+// query without quotes gets the same scores. A phrase of one word is just that word, and a quote that is not
+// closed runs to the end of the query.
+//
+// The postings of a phrase are found from the postings of its words, the rarest of which leads an intersection
+// that gallops through the others, and the positions of the words are only read from positions.bin for the
+// documents that have all of them.
+public class PhraseQuery {
+
+    // Each clause is a single token, or the tokens of a phrase, in query order
+    private final List<List<String>> clauses;
+
+    private PhraseQuery(List<List<String>> clauses) {
+        this.clauses = clauses;
+    }
+
+    // Tokenize a query as IndexEngine.tokenize does, keeping the tokens of each quoted phrase together
+    public static PhraseQuery parse(String query, boolean stem) {
+        List<List<String>> clauses = new ArrayList<>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i <= query.length(); i++) {
+            if (i < query.length() && query.charAt(i) != '"') {
+                continue;
+            }
+            List<String> tokens = new ArrayList<>();
+            IndexEngine.tokenize(query.substring(start, i), tokens, stem);
+            if (quoted && tokens.size() > 1) {
+                clauses.add(tokens);
+            } else {
+                for (String token : tokens) {
+                    clauses.add(Collections.singletonList(token));
+                }
+            }
+            quoted = !quoted;
+            start = i + 1;
+        }
+        return new PhraseQuery(clauses);
+    }
+
+    public boolean hasPhrases() {
+        for (List<String> clause : clauses) {
+            if (clause.size() > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Every token of the query in order, those of the phrases included, as IndexEngine.tokenize gives them
+    public List<String> tokens() {
+        List<String> tokens = new ArrayList<>();
+        for (List<String> clause : clauses) {
+            tokens.addAll(clause);
+        }
+        return tokens;
+    }
+
+    // The tokens of the query with each phrase as one quoted element, which no token can be equal to, so that
+    // a query and the same words in quotes have different keys
+    public List<String> cacheKey() {
+        List<String> key = new ArrayList<>();
+        for (List<String> clause : clauses) {
+            key.add(clause.size() == 1 ? clause.get(0) : '"' + String.join(" ", clause) + '"');
+        }
+        return key;
+    }
+
+    // The k best documents for the query, best first, scored term at a time with every phrase as a term.
+    // Decoded postings are taken from postingsSource when it is not null
+    public RankedList calculateBM25(BinaryIndex index, PositionsIndex positions, PostingsSource postingsSource, int k) {
+        int N = index.numDocuments();
+        double[] lengthNorms = index.bm25LengthNorms();
+        ScoreAccumulator docScore = BM25.accumulator(N);
+
+        // The postings of a phrase that is in the query more than once are only found once
+        HashMap<List<String>, PostingsList> phrasePostings = new HashMap<>();
+        for (List<String> clause : clauses) {
+            int qf = Collections.frequency(clauses, clause);
+            double queryTf = BM25.queryTf(qf);
+
+            PostingsList postings;
+            if (clause.size() == 1) {
+                int tokenId = index.termID(clause.get(0));
+                if (tokenId < 0) {
+                    continue;
+                }
+                postings = postingsSource != null ? postingsSource.get(tokenId) : index.postings(tokenId);
+            } else {
+                postings = phrasePostings.get(clause);
+                if (postings == null) {
+                    postings = phrasePostings(clause, index, positions, postingsSource);
+                    phrasePostings.put(clause, postings);
+                }
+            }
+
+            // n_i is the number of docs with the token or phrase in them
+            int n_i = postings.size();
+            if (n_i == 0) {
+                continue;
+            }
+            double idf = BM25.idf(N, n_i);
+            for (int i = 0; i < postings.size(); i++) {
+                int docid = postings.getDocID(i);
+                docScore.add(docid, BM25.score(postings.getCount(i), lengthNorms[docid], queryTf, idf));
+            }
+        }
+
+        TopK topK = new TopK(k, index::docno);
+        for (int i = 0; i < docScore.size(); i++) {
+            int docid = docScore.docID(i);
+            topK.add(docid, docScore.score(docid));
+        }
+        return topK.ranked();
+    }
+
+    // The documents that have the phrase and the number of times each has it, in docid order
+    public static PostingsList phrasePostings(List<String> phrase, BinaryIndex index, PositionsIndex positions, PostingsSource postingsSource) {
+        PostingsList result = new PostingsList();
+        int length = phrase.size();
+        int[] termIDs = new int[length];
+        PostingsList[] lists = new PostingsList[length];
+        int lead = 0;
+        for (int j = 0; j < length; j++) {
+            termIDs[j] = index.termID(phrase.get(j));
+
+            // No document has a phrase with a word that is not in the lexicon
+            if (termIDs[j] < 0) {
+                return result;
+            }
+            lists[j] = postingsSource != null ? postingsSource.get(termIDs[j]) : index.postings(termIDs[j]);
+            if (lists[j].size() < lists[lead].size()) {
+                lead = j;
+            }
+        }
+
+        // Where each word is in its postings, and the positions of the word once a document has every word
+        int[] at = new int[length];
+        PositionsIndex.Positions[] wordPositions = new PositionsIndex.Positions[length];
+        int[][] docPositions = new int[length][];
+        int[] counts = new int[length];
+        PostingsList leadPostings = lists[lead];
+        nextDoc:
+        for (int i = 0; i < leadPostings.size(); i++) {
+            int docid = leadPostings.getDocID(i);
+            for (int j = 0; j < length; j++) {
+                if (j == lead) {
+                    at[j] = i;
+                    continue;
+                }
+                at[j] = BooleanAND.gallop(lists[j], at[j], docid);
+                if (at[j] == lists[j].size()) {
+                    break nextDoc;
+                }
+                if (lists[j].getDocID(at[j]) != docid) {
+                    continue nextDoc;
+                }
+            }
+
+            for (int j = 0; j < length; j++) {
+                if (wordPositions[j] == null) {
+                    wordPositions[j] = positions.positions(termIDs[j], lists[j]);
+                }
+                docPositions[j] = wordPositions[j].positions(at[j]);
+                counts[j] = lists[j].getCount(at[j]);
+            }
+            int count = countPhrase(docPositions, counts);
+            if (count > 0) {
+                result.add(docid, count);
+            }
+        }
+        return result;
+    }
+
+    // Number of places the words are at consecutive positions, given the positions of the j-th word of the
+    // phrase in the first counts[j] ints of positions[j]. Each place the word with the fewest positions is at
+    // is checked, moving forward through the positions of the others
+    static int countPhrase(int[][] positions, int[] counts) {
+        int length = positions.length;
+        int anchor = 0;
+        for (int j = 1; j < length; j++) {
+            if (counts[j] < counts[anchor]) {
+                anchor = j;
+            }
+        }
+
+        int[] next = new int[length];
+        int count = 0;
+        nextStart:
+        for (int a = 0; a < counts[anchor]; a++) {
+            int start = positions[anchor][a] - anchor;
+            if (start < 0) {
+                continue;
+            }
+            for (int j = 0; j < length; j++) {
+                if (j == anchor) {
+                    continue;
+                }
+                while (next[j] < counts[j] && positions[j][next[j]] < start + j) {
+                    next[j]++;
+                }
+                if (next[j] == counts[j]) {
+                    return count;
+                }
+                if (positions[j][next[j]] != start + j) {
+                    continue nextStart;
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+}
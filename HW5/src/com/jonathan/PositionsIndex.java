@@ -0,0 +1,143 @@
+package com.jonathan;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static com.jonathan.BinaryIndex.SKIP_BLOCK_SIZE;
+
+// Reader for positions.bin, the positions of every token in its document, kept apart from index.bin so that
+// queries that do not need them never read them. The positions of a term are stored posting by posting in the
+// order of its postings in index.bin, each posting having as many as its count, so they are read alongside a
+// PostingsList of the term and only the postings asked for are decoded. A position is the number of the token
+// in the document counting the headline, text and graphic in that order, with one position left out between
+// each of them so that no phrase runs from one into the next. The file is memory mapped and nothing is read
+// when it is opened.
+//
+// Layout, all ints and longs big endian:
+//   header     [magic, version, number of documents, number of terms, directory offset (long), file length (long)]
+//   terms      [byte offset of the positions of every block of SKIP_BLOCK_SIZE postings after the first, from the
+//              end of these offsets], then the positions of every posting as variable byte codes of the gap
+//              from the previous position of the posting, the first from 0
+//   directory  [offset (long)] of every term, then the end of the last term
+// Term ids are those of the index.bin it was written from.
+public class PositionsIndex {
+    public static final String FILE_NAME = "positions.bin";
+
+    static final int MAGIC = 0x4A504F53;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    private final MappedByteBuffer buffer;
+    private final int numTerms;
+    private final int directory;
+
+    private PositionsIndex(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(String.format("%s is too large to map", file));
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(String.format("%s is not a positions file", file));
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(String.format("%s is version %d of the positions format but version %d is expected. Delete it and run PositionsIndexWriter on the indexed data",
+                    file, buffer.getInt(4), VERSION));
+        }
+        if (buffer.getLong(24) != buffer.capacity()) {
+            throw new IOException(String.format("%s is truncated", file));
+        }
+        numTerms = buffer.getInt(12);
+        directory = (int) buffer.getLong(16);
+    }
+
+    // Open the positions.bin of the indexed data, or return null if it has none
+    public static PositionsIndex open(String indexedDataPath, BinaryIndex index) throws IOException {
+        Path file = Paths.get(indexedDataPath, FILE_NAME);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        PositionsIndex positions = new PositionsIndex(file);
+        if (positions.numTerms != index.numTerms() || positions.buffer.getInt(8) != index.numDocuments()) {
+            throw new IOException(String.format("%s was not written from the index.bin next to it. Delete it and run PositionsIndexWriter on the indexed data", file));
+        }
+        return positions;
+    }
+
+    // The positions of the postings of a term, which must be the postings of the term in the index
+    public Positions positions(int termID, PostingsList postings) {
+        if (termID < 0 || termID >= numTerms) {
+            throw new IllegalArgumentException(String.format("No term with id %d", termID));
+        }
+        return new Positions((int) buffer.getLong(directory + 8 * termID), postings);
+    }
+
+    // Decodes the positions of the postings of a term, which are asked for in increasing order of posting.
+    // Blocks of postings before the one asked for are jumped over, and the postings before it in its block are
+    // skipped without decoding their positions
+    public class Positions {
+        private final PostingsList postings;
+        private final int skips;
+        private final int data;
+
+        // Next posting, and where its positions start
+        private int posting = 0;
+        private int position;
+
+        private int[] positions = new int[16];
+
+        private Positions(int start, PostingsList postings) {
+            this.postings = postings;
+            this.skips = start;
+            this.data = start + 4 * ((postings.size() - 1) / SKIP_BLOCK_SIZE);
+            this.position = data;
+        }
+
+        // The positions of the i-th posting, in increasing order, in the first postings.getCount(i) ints of an
+        // array that is reused by the next call
+        public int[] positions(int i) {
+            if (i < posting) {
+                throw new IllegalArgumentException(String.format("Posting %d was asked for after posting %d", i, posting - 1));
+            }
+            int block = i / SKIP_BLOCK_SIZE;
+            if (block * SKIP_BLOCK_SIZE > posting) {
+                posting = block * SKIP_BLOCK_SIZE;
+                position = data + buffer.getInt(skips + 4 * (block - 1));
+            }
+            for (; posting < i; posting++) {
+                int count = postings.getCount(posting);
+                while (count > 0) {
+                    if (buffer.get(position++) >= 0) {
+                        count--;
+                    }
+                }
+            }
+
+            int count = postings.getCount(i);
+            if (count > positions.length) {
+                positions = new int[Math.max(count, 2 * positions.length)];
+            }
+            int previous = 0;
+            for (int j = 0; j < count; j++) {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get(position++);
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                previous += value;
+                positions[j] = previous;
+            }
+            posting = i + 1;
+            return positions;
+        }
+    }
+}
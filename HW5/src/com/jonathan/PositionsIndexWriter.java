@@ -0,0 +1,195 @@
+package com.jonathan;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static com.jonathan.BinaryIndex.SKIP_BLOCK_SIZE;
+import static com.jonathan.PositionsIndex.*;
+
+// Writes positions.bin, read by PositionsIndex, from the documents in the document store. Every document is
+// tokenized again as IndexEngine tokenized it, against the terms of index.bin, and the gaps between the
+// positions of each term are appended to the positions of the term, which are held in memory until every
+// document has been read. IndexEngine writes it with --positions, and it can be added to an index later by
+// running this class on the indexed data.
+public class PositionsIndexWriter {
+    public static void main(String[] args) {
+
+        // Input argument checking
+        if (args.length != 2) {
+            System.out.println(String.format("ERROR: Wrong number of arguments passed in! Expected: 2. Received: %d", args.length));
+            System.out.println("First parameter: path to the indexed data");
+            System.out.println("Second parameter: use of porter stemmer when the index was built. (True/False)");
+            System.exit(1);
+        }
+
+        String indexedDataPath = args[0];
+        boolean stem = args[1].equals("True");
+        if (Files.exists(Paths.get(indexedDataPath, PositionsIndex.FILE_NAME))) {
+            System.out.println(String.format("ERROR: %s already exists!", PositionsIndex.FILE_NAME));
+            System.exit(1);
+        }
+
+        try {
+            long startTime = System.currentTimeMillis();
+            write(indexedDataPath, stem);
+            long endTime = System.currentTimeMillis();
+            System.out.println(String.format("Wrote %s in %.2f seconds", PositionsIndex.FILE_NAME, (endTime - startTime) / 1000.0));
+        } catch (IOException e) {
+            System.out.println("ERROR: Unable to write the positions file");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    // Write the positions.bin of the indexed data from its document store, tokenizing with or without the
+    // Porter stemmer as the index was built
+    public static void write(String indexedDataPath, boolean stem) throws IOException {
+        BinaryIndex index = BinaryIndex.open(indexedDataPath);
+        DocumentStore documentStore = DocumentStore.open(indexedDataPath);
+        if (documentStore == null) {
+            throw new IOException(String.format("%s has no document store to read the documents from", indexedDataPath));
+        }
+        int numDocuments = documentStore.numDocuments();
+        int numTerms = index.numTerms();
+        if (numDocuments != index.numDocuments()) {
+            throw new IOException(String.format("The document store of %s does not hold the documents of its index", indexedDataPath));
+        }
+
+        // Position gaps of every term, the number of its postings so far and the byte offset of each block of them
+        byte[][] termPositions = new byte[numTerms][];
+        int[] termLengths = new int[numTerms];
+        int[] numPostings = new int[numTerms];
+        int[][] blockOffsets = new int[numTerms][];
+        int[] lastDocID = new int[numTerms];
+        int[] lastPosition = new int[numTerms];
+        Arrays.fill(lastDocID, -1);
+
+        TermTokenizer tokenizer = new TermTokenizer(stem, new TermTokenizer.TermResolver() {
+            @Override
+            public int resolve(String term) {
+                int termID = index.termID(term);
+                if (termID < 0) {
+                    throw new IllegalStateException(String.format("%s is not a term of the index. Check that the index was built %s the Porter stemmer",
+                            term, stem ? "with" : "without"));
+                }
+                return termID;
+            }
+
+            @Override
+            public String term(int termID) {
+                return index.term(termID);
+            }
+        }, true);
+        DocumentScanner scanner = new DocumentScanner();
+        int[] fieldEnds = new int[ParsedDocument.INDEXED_FIELDS.length];
+        long totalPositions = 0;
+
+        for (int id = 0; id < numDocuments; id++) {
+            scanner.scan(documentStore.getDocument(id));
+            tokenizer.startDocument();
+            try {
+                for (int f = 0; f < fieldEnds.length; f++) {
+                    int field = ParsedDocument.INDEXED_FIELDS[f];
+                    tokenizer.tokenize(scanner.buffer(), scanner.start(field), scanner.end(field), scanner.isAscii(field));
+                    fieldEnds[f] = tokenizer.length();
+                }
+            } catch (IllegalStateException e) {
+                throw new IOException(e.getMessage());
+            }
+
+            // One position is left out after each field
+            int[] sequence = tokenizer.sequence();
+            int f = 0;
+            for (int i = 0; i < tokenizer.length(); i++) {
+                while (i == fieldEnds[f]) {
+                    f++;
+                }
+                int termID = sequence[i];
+                int position = i + f;
+                if (lastDocID[termID] != id) {
+                    if (numPostings[termID] > 0 && numPostings[termID] % SKIP_BLOCK_SIZE == 0) {
+                        int block = numPostings[termID] / SKIP_BLOCK_SIZE;
+                        if (blockOffsets[termID] == null) {
+                            blockOffsets[termID] = new int[4];
+                        } else if (block > blockOffsets[termID].length) {
+                            blockOffsets[termID] = Arrays.copyOf(blockOffsets[termID], 2 * blockOffsets[termID].length);
+                        }
+                        blockOffsets[termID][block - 1] = termLengths[termID];
+                    }
+                    numPostings[termID]++;
+                    lastDocID[termID] = id;
+                    lastPosition[termID] = 0;
+                }
+
+                byte[] bytes = termPositions[termID];
+                if (bytes == null) {
+                    bytes = termPositions[termID] = new byte[8];
+                } else if (bytes.length - termLengths[termID] < 5) {
+                    bytes = termPositions[termID] = Arrays.copyOf(bytes, 2 * bytes.length);
+                }
+                termLengths[termID] = BinaryIndexWriter.writeVByte(bytes, termLengths[termID], position - lastPosition[termID]);
+                lastPosition[termID] = position;
+            }
+            totalPositions += tokenizer.length();
+        }
+        documentStore.close();
+
+        if (totalPositions != index.totalDocLength()) {
+            throw new IOException(String.format("The documents of %s have %d tokens but its index counts %d", indexedDataPath, totalPositions, index.totalDocLength()));
+        }
+        for (int termID = 0; termID < numTerms; termID++) {
+            if (numPostings[termID] != index.documentFrequency(termID)) {
+                throw new IOException(String.format("%s is in %d documents but its index has %d postings for it", index.term(termID),
+                        numPostings[termID], index.documentFrequency(termID)));
+            }
+        }
+
+        String file = Paths.get(indexedDataPath, PositionsIndex.FILE_NAME).toString();
+        try (FileOutputStream fos = new FileOutputStream(file);
+             DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos, PostingsFile.BUFFER_SIZE))) {
+            dos.write(new byte[HEADER_SIZE]);
+            long position = HEADER_SIZE;
+
+            long[] termOffsets = new long[numTerms + 1];
+            for (int termID = 0; termID < numTerms; termID++) {
+                termOffsets[termID] = position;
+                int numBlocks = (numPostings[termID] - 1) / SKIP_BLOCK_SIZE;
+                for (int block = 0; block < numBlocks; block++) {
+                    dos.writeInt(blockOffsets[termID][block]);
+                }
+                if (termLengths[termID] > 0) {
+                    dos.write(termPositions[termID], 0, termLengths[termID]);
+                }
+                position += 4L * numBlocks + termLengths[termID];
+                termPositions[termID] = null;
+            }
+            termOffsets[numTerms] = position;
+            if (position > Integer.MAX_VALUE) {
+                throw new IOException(String.format("%s would be too large to map", file));
+            }
+
+            long directoryOffset = position;
+            for (long termOffset : termOffsets) {
+                dos.writeLong(termOffset);
+            }
+            position += 8L * (numTerms + 1);
+            dos.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(numDocuments);
+            header.putInt(numTerms);
+            header.putLong(directoryOffset);
+            header.putLong(position);
+            header.flip();
+            fos.getChannel().write(header, 0);
+        }
+    }
+}
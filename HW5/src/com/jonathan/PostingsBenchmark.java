@@ -0,0 +1,119 @@
+package com.jonathan;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+// Compares building the inverted index with boxed HashMap<Integer, List<Integer>> postings against the
+// primitive InvertedIndex, reporting build time, GC time and the heap held by the finished index.
+public class PostingsBenchmark {
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+
+        // Input argument checking
+        if (args.length != 2) {
+            System.out.printf("ERROR: Wrong number of arguments passed in! Expected: 2. Received: %d%n", args.length);
+            System.out.println("First parameter: path to the latimes.gz file.");
+            System.out.println("Second Parameter: use of porter stemmer. (True/False)");
+            System.exit(1);
+        }
+        boolean stem = args[1].equals("True");
+
+        // Parse the collection once up front so that only the postings construction is timed
+        List<int[]> termIDs = new ArrayList<>();
+        List<int[]> counts = new ArrayList<>();
+        LocalLexicon lexicon = new LocalLexicon();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(args[0]))))) {
+            String txt;
+            StringBuffer doc = new StringBuffer();
+            DocumentScanner scanner = new DocumentScanner();
+            TermTokenizer tokenizer = new TermTokenizer(stem, lexicon);
+            while ((txt = br.readLine()) != null) {
+                doc.append(txt + "\n");
+                if (txt.contains("</DOC>")) {
+                    ParsedDocument parsed = ParsedDocument.parse(termIDs.size(), doc, scanner, tokenizer, true);
+                    termIDs.add(parsed.getTermIDs());
+                    counts.add(parsed.getCounts());
+                    doc.delete(0, doc.length());
+                }
+            }
+        }
+        System.out.printf("Parsed %d documents with %d terms%n", termIDs.size(), lexicon.size());
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.printf("Round %d%n", round);
+            measure("boxed HashMap<Integer, List<Integer>>", () -> buildBoxed(termIDs, counts));
+            measure("primitive InvertedIndex", () -> buildPrimitive(termIDs, counts));
+        }
+    }
+
+    private interface IndexBuild {
+        Object build();
+    }
+
+    private static void measure(String name, IndexBuild build) {
+        long heapBefore = usedHeapAfterGC();
+        long gcBefore = totalGCMillis();
+        long start = System.nanoTime();
+        Object index = build.build();
+        long buildNanos = System.nanoTime() - start;
+        long gcMillis = totalGCMillis() - gcBefore;
+        long heapAfter = usedHeapAfterGC();
+
+        System.out.printf("  %-40s build %7.1f ms  (GC %5d ms)  heap %8.1f MB%n",
+                name, buildNanos / 1e6, gcMillis, (heapAfter - heapBefore) / (1024.0 * 1024.0));
+
+        // Keep the index reachable until the heap has been measured
+        if (index.hashCode() == 42) {
+            System.out.print("");
+        }
+    }
+
+    private static HashMap<Integer, List<Integer>> buildBoxed(List<int[]> termIDs, List<int[]> counts) {
+        HashMap<Integer, List<Integer>> invIndex = new HashMap<>();
+        for (int docID = 0; docID < termIDs.size(); docID++) {
+            int[] ids = termIDs.get(docID);
+            for (int i = 0; i < ids.length; i++) {
+                List<Integer> postings = invIndex.computeIfAbsent(ids[i], termID -> new ArrayList<>());
+                postings.add(docID);
+                postings.add(counts.get(docID)[i]);
+            }
+        }
+        return invIndex;
+    }
+
+    private static InvertedIndex buildPrimitive(List<int[]> termIDs, List<int[]> counts) {
+        InvertedIndex invIndex = new InvertedIndex();
+        for (int docID = 0; docID < termIDs.size(); docID++) {
+            int[] ids = termIDs.get(docID);
+            for (int i = 0; i < ids.length; i++) {
+                invIndex.add(ids[i], docID, counts.get(docID)[i]);
+            }
+        }
+        return invIndex;
+    }
+
+    private static long usedHeapAfterGC() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long totalGCMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(gc.getCollectionTime(), 0);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,177 @@
+package com.jonathan;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Decoded postings of the hot terms of index.bin within a budget of bytes, so queries that keep asking for
+// the same terms do not decode their postings every time. The compressed postings are memory mapped, so the
+// operating system already keeps those of hot terms in memory; what is saved here is decoding them.
+//
+// Terms are spread over STRIPES stripes by term id, each with its own lock, so concurrent lookups only wait
+// for each other when they want terms of the same stripe, and postings are decoded outside the locks. The
+// budget is shared by every stripe, and lists are evicted with GreedyDual-Size-Frequency across all of them:
+// a list is worth
+//   clock + hits * (postings + MISS_COST) / bytes
+// where clock is the worth of the last list evicted. Lists that are hit often or are cheap to hold for what
+// they cost to decode stay, and the clock ages lists that were hot a long time ago. A new list goes in after
+// enough of the lists worth least in any stripe are evicted to make room for it, so only a list larger than
+// the whole budget is never cached.
+public class PostingsCache implements PostingsSource {
+    private static final int STRIPES = 16;
+
+    // The fixed cost of a miss, looking the term up and starting to decode, in postings
+    private static final int MISS_COST = 64;
+
+    // Bytes of a cached list besides its int array
+    private static final int ENTRY_BYTES = 96;
+
+    private static class Entry {
+        final int termID;
+        final PostingsList postings;
+        final long bytes;
+        long hits = 1;
+        double worth;
+
+        Entry(int termID, PostingsList postings, long bytes) {
+            this.termID = termID;
+            this.postings = postings;
+            this.bytes = bytes;
+        }
+
+        double worthPerHit() {
+            return (postings.size() + MISS_COST) / (double) bytes;
+        }
+    }
+
+    private static class Stripe {
+        final HashMap<Integer, Entry> entries = new HashMap<>();
+
+        // Least worth first
+        final TreeSet<Entry> byWorth = new TreeSet<>(Comparator.<Entry>comparingDouble(entry -> entry.worth)
+                .thenComparingInt(entry -> entry.termID));
+    }
+
+    private final BinaryIndex index;
+    private final long maxBytes;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    // Held while making room for a list and putting it in, which takes the lock of one stripe at a time. The
+    // clock and the resident bytes only change under it
+    private final Object evictionLock = new Object();
+    private volatile double clock = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicLong residentBytes = new AtomicLong();
+
+    public PostingsCache(BinaryIndex index, long maxBytes) {
+        this.index = index;
+        this.maxBytes = maxBytes;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // The decoded postings of the term, from the cache or from index.bin
+    @Override
+    public PostingsList get(int termID) {
+        Stripe stripe = stripes[termID & (STRIPES - 1)];
+        synchronized (stripe) {
+            Entry entry = stripe.entries.get(termID);
+            if (entry != null) {
+                stripe.byWorth.remove(entry);
+                entry.hits++;
+                entry.worth = clock + entry.hits * entry.worthPerHit();
+                stripe.byWorth.add(entry);
+                hits.increment();
+                return entry.postings;
+            }
+        }
+        misses.increment();
+
+        PostingsList postings = index.postings(termID);
+        long bytes = postings.heapBytes() + ENTRY_BYTES;
+        if (bytes > maxBytes) {
+            return postings;
+        }
+
+        synchronized (evictionLock) {
+            synchronized (stripe) {
+                // Another query may have decoded it at the same time
+                if (stripe.entries.containsKey(termID)) {
+                    return postings;
+                }
+            }
+
+            // Room is made before the list goes in, so that it is not evicted itself
+            makeRoom(bytes);
+            Entry entry = new Entry(termID, postings, bytes);
+            synchronized (stripe) {
+                entry.worth = clock + entry.worthPerHit();
+                stripe.entries.put(termID, entry);
+                stripe.byWorth.add(entry);
+            }
+            residentBytes.addAndGet(bytes);
+        }
+        return postings;
+    }
+
+    // Evict the lists worth least in the whole cache until there is room for bytes more. Only called with
+    // evictionLock held, so no list can be put in or evicted meanwhile
+    private void makeRoom(long bytes) {
+        while (residentBytes.get() + bytes > maxBytes) {
+            Stripe victimStripe = null;
+            double leastWorth = Double.POSITIVE_INFINITY;
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    if (!stripe.byWorth.isEmpty() && stripe.byWorth.first().worth < leastWorth) {
+                        victimStripe = stripe;
+                        leastWorth = stripe.byWorth.first().worth;
+                    }
+                }
+            }
+            synchronized (victimStripe) {
+                // Hits may have changed which list of the stripe is worth least since, so the one worth least now goes
+                Entry victim = victimStripe.byWorth.pollFirst();
+                victimStripe.entries.remove(victim.termID);
+                clock = Math.max(clock, victim.worth);
+                residentBytes.addAndGet(-victim.bytes);
+                evictions.increment();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    // Share of the lookups that were hits
+    public double hitRatio() {
+        long hitCount = getHits();
+        long lookups = hitCount + getMisses();
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    // Bytes of the lists held now
+    public long residentBytes() {
+        return residentBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses (hit ratio %.3f), %d evictions, %d of %d bytes resident",
+                getHits(), getMisses(), hitRatio(), getEvictions(), residentBytes(), maxBytes);
+    }
+}
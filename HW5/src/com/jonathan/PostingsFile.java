@@ -0,0 +1,112 @@
+package com.jonathan;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Streamed replacement for the serialized invIndex.txt. It is written term by term, so the SPIMI build can
+// merge into it without holding the whole index, and reads straight back into int arrays.
+// Format: [number of terms with postings] then for each of them in term id order [term id, number of ints, docid, count, docid, count, ...]
+public class PostingsFile {
+    public static final String FILE_NAME = "postings.bin";
+
+    static final int BUFFER_SIZE = 1 << 16;
+
+    // Write the whole in-memory index
+    public static void write(InvertedIndex invIndex, String outputFile) throws IOException {
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile), BUFFER_SIZE))) {
+            dos.writeInt(invIndex.numTermsWithPostings());
+            writeTerms(invIndex, dos);
+        }
+    }
+
+    // Write the postings of every term in the index in term id order, skipping terms without postings
+    public static void writeTerms(InvertedIndex invIndex, DataOutputStream dos) throws IOException {
+        for (int termID = 0; termID < invIndex.numTerms(); termID++) {
+            PostingsList postings = invIndex.get(termID);
+            if (postings == null) {
+                continue;
+            }
+            dos.writeInt(termID);
+            dos.writeInt(postings.intLength());
+            int[] ints = postings.ints();
+            for (int i = 0; i < postings.intLength(); i++) {
+                dos.writeInt(ints[i]);
+            }
+        }
+    }
+
+    // Receives the postings of one term at a time while a postings file is streamed
+    public interface PostingsConsumer {
+        void accept(int termID, PostingsList postings) throws IOException;
+    }
+
+    // Load the inverted index from whichever format the indexed data was written in
+    public static InvertedIndex readInvertedIndex(String indexedDataPath) throws IOException, ClassNotFoundException {
+        if (!Files.exists(Paths.get(indexedDataPath, FILE_NAME))) {
+            return readSerializedInvertedIndex(indexedDataPath);
+        }
+
+        InvertedIndex invIndex = new InvertedIndex();
+        readTerms(indexedDataPath + "/" + FILE_NAME, invIndex::put);
+        return invIndex;
+    }
+
+    // Stream a postings file one term at a time, in the order the terms were written
+    public static void readTerms(String postingsFile, PostingsConsumer consumer) throws IOException {
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(postingsFile), BUFFER_SIZE))) {
+            int numTerms = dis.readInt();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int i = 0; i < numTerms; i++) {
+                int termID = dis.readInt();
+                int length = dis.readInt();
+                int[] ints = new int[length];
+
+                // Read the ints in bulk rather than one readInt at a time
+                int read = 0;
+                while (read < length) {
+                    int chunk = Math.min(length - read, buffer.length / 4);
+                    dis.readFully(buffer, 0, chunk * 4);
+                    ByteBuffer.wrap(buffer, 0, chunk * 4).asIntBuffer().get(ints, read, chunk);
+                    read += chunk;
+                }
+                consumer.accept(termID, new PostingsList(ints, length));
+            }
+        } catch (EOFException e) {
+            throw new IOException(String.format("%s is truncated", postingsFile), e);
+        }
+    }
+
+    // Indexes built before postings.bin existed store a serialized HashMap<Integer, List<Integer>>
+    private static InvertedIndex readSerializedInvertedIndex(String indexedDataPath) throws IOException, ClassNotFoundException {
+        try (FileInputStream fis = new FileInputStream(indexedDataPath + "/invIndex.txt");
+             BufferedInputStream bis = new BufferedInputStream(fis);
+             ObjectInputStream ois = new ObjectInputStream(bis)) {
+            @SuppressWarnings("unchecked")
+            HashMap<Integer, List<Integer>> boxedIndex = (HashMap<Integer, List<Integer>>) ois.readObject();
+
+            InvertedIndex invIndex = new InvertedIndex(boxedIndex.size());
+            for (Map.Entry<Integer, List<Integer>> entry : boxedIndex.entrySet()) {
+                List<Integer> boxedPostings = entry.getValue();
+                int[] ints = new int[boxedPostings.size()];
+                for (int i = 0; i < ints.length; i++) {
+                    ints[i] = boxedPostings.get(i);
+                }
+                invIndex.put(entry.getKey(), new PostingsList(ints, ints.length));
+            }
+            return invIndex;
+        }
+    }
+}
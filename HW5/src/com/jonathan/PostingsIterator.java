@@ -0,0 +1,170 @@
+package com.jonathan;
+
+import java.nio.ByteBuffer;
+
+import static com.jonathan.BinaryIndex.SKIP_BLOCK_SIZE;
+import static com.jonathan.BinaryIndex.SKIP_ENTRY_SIZE;
+
+// Forward only iterator over the postings of one term in index.bin, decoding one posting at a time.
+// advance() uses the skip table of the term to jump straight to the block that can hold the target, so
+// intersecting a short list with a long one only decodes the blocks of the long list that are needed.
+// The skip table also gives the largest BM25 term frequency part of each block, so Block-Max WAND can tell
+// how much a term can add to the score of any document in a range of docids without decoding it.
+// It can also walk postings that were already decoded, such as those of a PostingsCache, and still use the
+// skip table in index.bin to jump between blocks and bound them.
+// Positioned before the first posting until nextDoc() or advance() is called.
+public class PostingsIterator {
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private final ByteBuffer buffer;
+    private final int df;
+    private final int numBlocks;
+
+    // Max BM25 tf of the whole term, for a term with a single block and so no skip table
+    private final double maxDocTf;
+
+    // Block found by the last advanceShallow()
+    private int shallowBlock = 0;
+
+    // Position of the skip table, and of the first block of postings
+    private final int skips;
+    private final int data;
+
+    private int position;
+    private int index = -1;
+    private int docID = -1;
+    private int count = 0;
+
+    // Docid that the next gap is added to
+    private int previousDocID = 0;
+
+    // The postings of the term when they were already decoded, or null to decode them from the buffer
+    private final PostingsList decoded;
+
+    PostingsIterator(ByteBuffer buffer, int start, int df, double maxDocTf, PostingsList decoded) {
+        this.buffer = buffer;
+        this.decoded = decoded;
+        this.df = df;
+        this.numBlocks = (df + SKIP_BLOCK_SIZE - 1) / SKIP_BLOCK_SIZE;
+        this.maxDocTf = maxDocTf;
+        this.skips = start;
+        this.data = numBlocks > 1 ? start + SKIP_ENTRY_SIZE * numBlocks : start;
+        this.position = data;
+    }
+
+    // Number of postings, the most that nextDoc() can be called
+    public int cost() {
+        return df;
+    }
+
+    public int docID() {
+        return docID;
+    }
+
+    // Count of the term in the current document
+    public int count() {
+        return count;
+    }
+
+    // Move to the next posting and return its docid, or NO_MORE_DOCS after the last one
+    public int nextDoc() {
+        if (++index >= df) {
+            index = df;
+            count = 0;
+            return docID = NO_MORE_DOCS;
+        }
+        if (decoded != null) {
+            count = decoded.getCount(index);
+            return docID = decoded.getDocID(index);
+        }
+        previousDocID += readVByte();
+        count = readVByte();
+        return docID = previousDocID;
+    }
+
+    // Move to the first posting with a docid of at least target and return its docid, or NO_MORE_DOCS.
+    // Does not move if the current docid is already at least target
+    public int advance(int target) {
+        if (docID >= target) {
+            return docID;
+        }
+        if (numBlocks > 1) {
+            int block = currentBlock();
+            if (lastDocID(block) < target) {
+                int low = findBlock(block + 1, target);
+                if (low == numBlocks) {
+                    index = df;
+                    count = 0;
+                    return docID = NO_MORE_DOCS;
+                }
+                index = low * SKIP_BLOCK_SIZE - 1;
+                if (decoded == null) {
+                    previousDocID = lastDocID(low - 1);
+                    position = data + buffer.getInt(skips + SKIP_ENTRY_SIZE * low);
+                }
+            }
+        }
+        while (nextDoc() < target) {
+            // Decode forward within the block
+        }
+        return docID;
+    }
+
+    // Find the block that the first posting with a docid of at least target is in, without decoding anything
+    // or moving, and return the last docid of that block. Returns NO_MORE_DOCS if no posting is at least
+    // target. A term with a single block has no skip table, and its block is taken to hold every docid
+    public int advanceShallow(int target) {
+        if (numBlocks <= 1) {
+            shallowBlock = 0;
+            return NO_MORE_DOCS - 1;
+        }
+        int block = currentBlock();
+        shallowBlock = lastDocID(block) < target ? findBlock(block + 1, target) : block;
+        return shallowBlock == numBlocks ? NO_MORE_DOCS : lastDocID(shallowBlock);
+    }
+
+    // At least the largest term frequency part of BM25 of any posting in the block found by advanceShallow()
+    public double blockMaxDocTf() {
+        if (shallowBlock == numBlocks) {
+            return 0;
+        }
+        if (numBlocks <= 1) {
+            return maxDocTf;
+        }
+        return buffer.getFloat(skips + SKIP_ENTRY_SIZE * shallowBlock + 8);
+    }
+
+    private int currentBlock() {
+        return index < 0 ? 0 : Math.min(index, df - 1) / SKIP_BLOCK_SIZE;
+    }
+
+    // Binary search for the first block from low on that ends at or after target, or numBlocks if none does
+    private int findBlock(int low, int target) {
+        int high = numBlocks;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lastDocID(mid) < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int lastDocID(int block) {
+        return buffer.getInt(skips + SKIP_ENTRY_SIZE * block + 4);
+    }
+
+    private int readVByte() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
@@ -0,0 +1,57 @@
+package com.jonathan;
+
+import java.util.Arrays;
+
+// Postings of a single term packed into one growable int array as [docid, count, docid, count, ...]
+public class PostingsList {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] postings;
+    private int length;
+
+    public PostingsList() {
+        this.postings = new int[INITIAL_CAPACITY];
+        this.length = 0;
+    }
+
+    // Wrap postings that have already been read in, using the first length ints of the array
+    public PostingsList(int[] postings, int length) {
+        this.postings = postings;
+        this.length = length;
+    }
+
+    public void add(int docID, int count) {
+        if (length + 2 > postings.length) {
+            postings = Arrays.copyOf(postings, postings.length * 2);
+        }
+        postings[length++] = docID;
+        postings[length++] = count;
+    }
+
+    // Number of documents in the postings list
+    public int size() {
+        return length / 2;
+    }
+
+    public int getDocID(int i) {
+        return postings[2 * i];
+    }
+
+    public int getCount(int i) {
+        return postings[2 * i + 1];
+    }
+
+    // The backing array, only the first intLength() ints of which are used
+    public int[] ints() {
+        return postings;
+    }
+
+    public int intLength() {
+        return length;
+    }
+
+    // Approximate heap used by this list, including the unused capacity
+    public long heapBytes() {
+        return 16 + 16 + 4L * postings.length;
+    }
+}
@@ -0,0 +1,9 @@
+package com.jonathan;
+
+// Where the decoded postings of a term come from: an InvertedIndex held in memory, or a PostingsCache in
+// front of index.bin
+public interface PostingsSource {
+
+    // Returns null if the term has no postings
+    PostingsList get(int termID);
+}
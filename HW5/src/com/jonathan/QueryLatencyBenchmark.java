@@ -0,0 +1,161 @@
+package com.jonathan;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Times every query of a queries file with the ranking BM25 used to do, sorting every scored document and
+// then looking up each rank with keySet().toArray(), against selecting the top k with a heap. Each query is
+// run a few times after a warm up round and the median is printed, along with whether both give the same
+// scores at every rank (the documents of equal scores may be in a different order).
+public class QueryLatencyBenchmark {
+    private static final int ROUNDS = 5;
+    private static final int RESULTS = 1000;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double K2 = 7;
+
+    public static void main(String[] args) throws Exception {
+
+        // Input argument checking
+        if (args.length != 2) {
+            System.out.printf("ERROR: Wrong number of arguments passed in! Expected: 2. Received: %d%n", args.length);
+            System.out.println("First parameter: path to the indexed data");
+            System.out.println("Second parameter: path to the queries file");
+            System.exit(1);
+        }
+
+        BinaryIndex index = BinaryIndex.open(args[0]);
+        List<String> queryIds = new ArrayList<>();
+        List<List<String>> queries = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(args[1]))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                List<String> queryTokens = new ArrayList<>();
+                IndexEngine.tokenize(br.readLine(), queryTokens, false);
+                queryIds.add(line);
+                queries.add(queryTokens);
+            }
+        }
+
+        // Warm up
+        for (List<String> queryTokens : queries) {
+            rankSorted(queryTokens, index);
+            rankTopK(queryTokens, index);
+        }
+
+        System.out.printf("Median of %d rounds, top %d documents%n", ROUNDS, RESULTS);
+        System.out.printf("%-8s %8s %12s %12s %6s%n", "query", "scored", "sorted ms", "top-k ms", "same");
+        double[] sortedTimes = new double[queries.size()];
+        double[] topKTimes = new double[queries.size()];
+        for (int q = 0; q < queries.size(); q++) {
+            List<String> queryTokens = queries.get(q);
+            double[] sortedRounds = new double[ROUNDS];
+            double[] topKRounds = new double[ROUNDS];
+            Map<String, Double> sorted = null;
+            RankedList ranked = null;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                sorted = rankSorted(queryTokens, index);
+                sortedRounds[round] = (System.nanoTime() - start) / 1e6;
+
+                start = System.nanoTime();
+                ranked = rankTopK(queryTokens, index);
+                topKRounds[round] = (System.nanoTime() - start) / 1e6;
+            }
+            sortedTimes[q] = Benchmarks.median(sortedRounds);
+            topKTimes[q] = Benchmarks.median(topKRounds);
+            System.out.printf("%-8s %8d %12.3f %12.3f %6s%n", queryIds.get(q), sorted.size(),
+                    sortedTimes[q], topKTimes[q], sameScores(sorted, ranked) ? "yes" : "NO");
+        }
+        System.out.printf("%-8s %8s %12.3f %12.3f%n", "total", "", sum(sortedTimes), sum(topKTimes));
+        System.out.printf("%-8s %8s %12.3f %12.3f%n", "median", "", Benchmarks.median(sortedTimes), Benchmarks.median(topKTimes));
+    }
+
+    // BM25 as it was ranked before TopK, including writing out the docno of each rank
+    private static Map<String, Double> rankSorted(List<String> queryTokens, BinaryIndex index) {
+        int N = index.numDocuments();
+        double avgDocLength = index.averageDocLength();
+        HashMap<String, Double> docScore = new HashMap<>();
+        for (String token : queryTokens) {
+            int qf = Collections.frequency(queryTokens, token);
+            double queryTf = (K2+1)*qf / (K2 + qf);
+            int tokenId = index.termID(token);
+            if (tokenId < 0) {
+                continue;
+            }
+            PostingsList postings = index.postings(tokenId);
+            int n_i = postings.size();
+            double idf = Math.log((N - n_i + 0.5) / (n_i + 0.5 + 1));
+            for (int i = 0; i < postings.size(); i++) {
+                String docno = index.docno(postings.getDocID(i));
+                int docLength = index.documentLength(postings.getDocID(i));
+                double K = K1*((1-B) + B*docLength/avgDocLength);
+                int f_i = postings.getCount(i);
+                double docTf = ((K1 + 1) * f_i) / (K + f_i);
+                double score = docTf * queryTf * idf;
+                if (docScore.containsKey(docno)) {
+                    docScore.replace(docno, docScore.get(docno) + score);
+                } else {
+                    docScore.put(docno, score);
+                }
+            }
+        }
+
+        List<Map.Entry<String, Double>> list = new ArrayList<>(docScore.entrySet());
+        list.sort(Map.Entry.comparingByValue());
+        Collections.reverse(list);
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Double> entry : list) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+
+        double checksum = 0;
+        for (int i = 0; i < Math.min(result.size(), RESULTS); i++) {
+            String docno = (String) result.keySet().toArray()[i];
+            checksum += result.get(docno);
+        }
+        Benchmarks.consume(checksum);
+        return result;
+    }
+
+    private static RankedList rankTopK(List<String> queryTokens, BinaryIndex index) {
+        RankedList ranked = BM25.calculateBM25(queryTokens, index, RESULTS);
+        double checksum = 0;
+        for (int i = 0; i < ranked.size(); i++) {
+            checksum += index.docno(ranked.docID(i)).length() + ranked.score(i);
+        }
+        Benchmarks.consume(checksum);
+        return ranked;
+    }
+
+    private static boolean sameScores(Map<String, Double> sorted, RankedList ranked) {
+        if (ranked.size() != Math.min(sorted.size(), RESULTS)) {
+            return false;
+        }
+        int rank = 0;
+        for (double score : sorted.values()) {
+            if (rank == ranked.size()) {
+                break;
+            }
+            if (score != ranked.score(rank++)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double sum(double[] values) {
+        double total = 0;
+        for (double value : values) {
+            total += value;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,78 @@
+package com.jonathan;
+
+import java.util.HashSet;
+import java.util.List;
+
+// The ways BM25 can find the top k documents of a query. All of them give the same ranking
+public enum QueryProcessor {
+    // Term at a time, scoring every posting of every query term
+    EXHAUSTIVE {
+        @Override
+        public RankedList calculateBM25(List<String> queryTokens, BinaryIndex index, PostingsSource postingsSource, int k, QueryStats stats) {
+            return BM25.calculateBM25(queryTokens, index, postingsSource, k, stats);
+        }
+    },
+
+    // Document at a time with WAND dynamic pruning
+    WAND {
+        @Override
+        public RankedList calculateBM25(List<String> queryTokens, BinaryIndex index, PostingsSource postingsSource, int k, QueryStats stats) {
+            return Wand.calculateBM25(queryTokens, index, postingsSource, k, stats);
+        }
+    },
+
+    // Document at a time with Block-Max WAND, which also skips blocks of postings that cannot score high enough
+    BMW {
+        @Override
+        public RankedList calculateBM25(List<String> queryTokens, BinaryIndex index, PostingsSource postingsSource, int k, QueryStats stats) {
+            return BlockMaxWand.calculateBM25(queryTokens, index, postingsSource, k, stats);
+        }
+    },
+
+    // Document at a time with MaxScore, which only walks the postings of the terms that are essential
+    MAXSCORE {
+        @Override
+        public RankedList calculateBM25(List<String> queryTokens, BinaryIndex index, PostingsSource postingsSource, int k, QueryStats stats) {
+            return MaxScore.calculateBM25(queryTokens, index, postingsSource, k, stats);
+        }
+    },
+
+    // Chooses for each query: MaxScore for short queries, Block-Max WAND for longer ones
+    AUTO {
+        @Override
+        public RankedList calculateBM25(List<String> queryTokens, BinaryIndex index, PostingsSource postingsSource, int k, QueryStats stats) {
+            return forQuery(queryTokens).calculateBM25(queryTokens, index, postingsSource, k, stats);
+        }
+    };
+
+    // Most distinct terms a query can have for AUTO to use MaxScore
+    static final int MAXSCORE_MAX_TERMS = 3;
+
+    // The k best documents for the query, best first, with the postings decoded from index.bin
+    public RankedList calculateBM25(List<String> queryTokens, BinaryIndex index, int k, QueryStats stats) {
+        return calculateBM25(queryTokens, index, null, k, stats);
+    }
+
+    // The k best documents for the query, best first. Decoded postings are taken from postingsSource when it is
+    // not null. Counts the work done in stats, if it is not null
+    public abstract RankedList calculateBM25(List<String> queryTokens, BinaryIndex index, PostingsSource postingsSource, int k, QueryStats stats);
+
+    // The processor AUTO uses for a query
+    public static QueryProcessor forQuery(List<String> queryTokens) {
+        return new HashSet<>(queryTokens).size() <= MAXSCORE_MAX_TERMS ? MAXSCORE : BMW;
+    }
+
+    // The processor named by an option value such as "wand", or null if there is none by that name
+    public static QueryProcessor forName(String name) {
+        for (QueryProcessor processor : values()) {
+            if (processor.name().equalsIgnoreCase(name)) {
+                return processor;
+            }
+        }
+        return null;
+    }
+
+    public String optionName() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,291 @@
+package com.jonathan;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Results of recent queries of Search, keyed by the query tokens after tokenizing, so a repeated query is
+// answered without ranking, reading the documents or building the summaries again. The cache holds at most
+// a budget of bytes, counted from the strings and arrays of each entry, and evicts the way W-TinyLFU does:
+//   window      a small LRU that every new entry goes into, so a burst of new queries can be cached
+//   probation   entries that left the window, or were demoted from protected
+//   protected   entries that were hit again while on probation
+// An entry pushed out of the window only stays if its query has been asked more often than the least
+// recently used entry on probation, which is evicted in its place. How often each query has been asked is
+// kept approximately in a count-min sketch of 4 bit counters that is halved every so often, so queries that
+// were popular a long time ago fade, and a scan of queries asked once cannot flush out the popular ones.
+// All methods are synchronized.
+public class QueryResultCache {
+
+    // The top documents of a query as Search printed them
+    public static class Results {
+        private final int[] docIDs;
+        private final double[] scores;
+        private final String[] rendered;
+
+        // rendered holds the lines printed for each document: rank, headline, date, summary and docno
+        public Results(int[] docIDs, double[] scores, String[] rendered) {
+            this.docIDs = docIDs;
+            this.scores = scores;
+            this.rendered = rendered;
+        }
+
+        public int size() {
+            return docIDs.length;
+        }
+
+        public int getDocID(int rank) {
+            return docIDs[rank];
+        }
+
+        public double getScore(int rank) {
+            return scores[rank];
+        }
+
+        public String getRendered(int rank) {
+            return rendered[rank];
+        }
+
+        // Approximate bytes held, counting two bytes per char and the headers of the arrays and strings
+        long bytes() {
+            long bytes = 64 + 12L * docIDs.length;
+            for (int i = 0; i < docIDs.length; i++) {
+                bytes += 40 + 2L * rendered[i].length();
+            }
+            return bytes;
+        }
+    }
+
+    // Share of the budget for the window, and of the rest for protected entries
+    private static final double WINDOW_SHARE = 0.01;
+    private static final double PROTECTED_SHARE = 0.8;
+
+    // Guess at the bytes of an entry, to size the sketch
+    private static final int EXPECTED_ENTRY_BYTES = 16 * 1024;
+
+    private static class Entry {
+        final List<String> key;
+        final Results results;
+        final long bytes;
+
+        Entry(List<String> key, Results results, long bytes) {
+            this.key = key;
+            this.results = results;
+            this.bytes = bytes;
+        }
+    }
+
+    private final long maxBytes;
+    private final long windowBudget;
+    private final long protectedBudget;
+
+    // Least recently used first
+    private final LinkedHashMap<List<String>, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<List<String>, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<List<String>, Entry> protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long windowBytes = 0;
+    private long probationBytes = 0;
+    private long protectedBytes = 0;
+
+    private final FrequencySketch sketch;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public QueryResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.windowBudget = Math.max(1, (long) (maxBytes * WINDOW_SHARE));
+        this.protectedBudget = (long) ((maxBytes - windowBudget) * PROTECTED_SHARE);
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(64, maxBytes / EXPECTED_ENTRY_BYTES)));
+    }
+
+    // The cached results of the query tokens, or null
+    public synchronized Results get(List<String> queryTokens) {
+        sketch.increment(queryTokens);
+        Entry entry = window.get(queryTokens);
+        if (entry == null) {
+            entry = protectedEntries.get(queryTokens);
+        }
+        if (entry == null) {
+            entry = probation.remove(queryTokens);
+            if (entry != null) {
+                // Hit again on probation, so it is worth protecting
+                probationBytes -= entry.bytes;
+                protectedEntries.put(entry.key, entry);
+                protectedBytes += entry.bytes;
+                demoteProtected();
+            }
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.results;
+    }
+
+    // Cache the results of the query tokens. Results larger than the whole budget are not cached
+    public synchronized void put(List<String> queryTokens, Results results) {
+        if (window.containsKey(queryTokens) || probation.containsKey(queryTokens) || protectedEntries.containsKey(queryTokens)) {
+            return;
+        }
+        long bytes = 2L * 40 * queryTokens.size() + results.bytes();
+        for (String token : queryTokens) {
+            bytes += 2L * token.length();
+        }
+        if (bytes > maxBytes) {
+            evictions++;
+            return;
+        }
+        Entry entry = new Entry(List.copyOf(queryTokens), results, bytes);
+        window.put(entry.key, entry);
+        windowBytes += bytes;
+
+        // The least recently used entries of the window try to get into probation
+        while (windowBytes > windowBudget && window.size() > 1) {
+            Entry candidate = removeEldest(window);
+            windowBytes -= candidate.bytes;
+            admit(candidate);
+        }
+        while (bytes() > maxBytes) {
+            evictions++;
+            if (!probation.isEmpty()) {
+                probationBytes -= removeEldest(probation).bytes;
+            } else if (!protectedEntries.isEmpty()) {
+                protectedBytes -= removeEldest(protectedEntries).bytes;
+            } else {
+                windowBytes -= removeEldest(window).bytes;
+            }
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    // Entries evicted, or not admitted
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long bytes() {
+        return windowBytes + probationBytes + protectedBytes;
+    }
+
+    public synchronized int size() {
+        return window.size() + probation.size() + protectedEntries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d hits, %d misses, %d evictions, %d entries, %d of %d bytes",
+                hits, misses, evictions, size(), bytes(), maxBytes);
+    }
+
+    // A candidate from the window evicts the least recently used entries on probation for as long as it has
+    // been asked for more often than each of them, and is dropped as soon as it has not
+    private void admit(Entry candidate) {
+        int candidateFrequency = sketch.frequency(candidate.key);
+        Iterator<Entry> victims = probation.values().iterator();
+        while (bytes() + candidate.bytes > maxBytes && victims.hasNext()) {
+            Entry victim = victims.next();
+            if (candidateFrequency <= sketch.frequency(victim.key)) {
+                evictions++;
+                return;
+            }
+            victims.remove();
+            probationBytes -= victim.bytes;
+            evictions++;
+        }
+        probation.put(candidate.key, candidate);
+        probationBytes += candidate.bytes;
+    }
+
+    // Move the least recently used protected entries back to probation while protected is over its share
+    private void demoteProtected() {
+        while (protectedBytes > protectedBudget && protectedEntries.size() > 1) {
+            Entry entry = removeEldest(protectedEntries);
+            protectedBytes -= entry.bytes;
+            probation.put(entry.key, entry);
+            probationBytes += entry.bytes;
+        }
+    }
+
+    private static Entry removeEldest(LinkedHashMap<List<String>, Entry> segment) {
+        Iterator<Map.Entry<List<String>, Entry>> eldest = segment.entrySet().iterator();
+        Entry entry = eldest.next().getValue();
+        eldest.remove();
+        return entry;
+    }
+
+    // Count-min sketch of how often each key was asked for: 4 counters of 4 bits per key, in rows of 16
+    // counters packed in a long, and the smallest of them is the estimate. Every counter is halved once
+    // there have been 10 increments per row, so the counts are of recent queries
+    private static class FrequencySketch {
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final long[] table;
+        private final int sampleSize;
+        private int additions = 0;
+
+        FrequencySketch(int expectedEntries) {
+            int length = Integer.highestOneBit(Math.max(expectedEntries, 4) - 1) << 1;
+            this.table = new long[length];
+            this.sampleSize = 10 * length;
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int frequency = 15;
+            for (int i = 0; i < SEEDS.length; i++) {
+                frequency = Math.min(frequency, counter(hash, i));
+            }
+            return frequency;
+        }
+
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int slot = slot(hash, i);
+                int shift = shift(hash, i);
+                if (((table[slot] >>> shift) & 0xF) < 15) {
+                    table[slot] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions == sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        private int counter(int hash, int i) {
+            return (int) ((table[slot(hash, i)] >>> shift(hash, i)) & 0xF);
+        }
+
+        private int slot(int hash, int i) {
+            int h = (hash + SEEDS[i]) * SEEDS[i];
+            return (h ^ (h >>> 16)) & (table.length - 1);
+        }
+
+        // Which of the 16 counters of the long, different for each of the 4 hashes
+        private int shift(int hash, int i) {
+            return (((hash >>> (8 * i)) & 3) + 4 * i) << 2;
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45D9F3B;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
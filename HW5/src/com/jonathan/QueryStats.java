@@ -0,0 +1,25 @@
+package com.jonathan;
+
+// Counts of the work a query processor did for a query, for comparing processors
+public class QueryStats {
+    // Postings whose score was added to a document
+    long postingsScored = 0;
+
+    // Documents that were fully scored
+    long documentsScored = 0;
+
+    // Whether the query was cut short by its deadline, so that the ranking depends on how fast it ran
+    boolean deadlineMissed = false;
+
+    public long postingsScored() {
+        return postingsScored;
+    }
+
+    public long documentsScored() {
+        return documentsScored;
+    }
+
+    public boolean deadlineMissed() {
+        return deadlineMissed;
+    }
+}
@@ -0,0 +1,25 @@
+package com.jonathan;
+
+// The top ranked documents of a query, best first, as parallel arrays of internal docids and scores
+public class RankedList {
+    private final int[] docIDs;
+    private final double[] scores;
+
+    RankedList(int[] docIDs, double[] scores) {
+        this.docIDs = docIDs;
+        this.scores = scores;
+    }
+
+    public int size() {
+        return docIDs.length;
+    }
+
+    // Docid at a rank, starting at 0
+    public int docID(int rank) {
+        return docIDs[rank];
+    }
+
+    public double score(int rank) {
+        return scores[rank];
+    }
+}
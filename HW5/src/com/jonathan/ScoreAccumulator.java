@@ -0,0 +1,54 @@
+package com.jonathan;
+
+// Scores of the documents matched by a query, in an array indexed by internal docid rather than a map. The
+// docids that have been given a score are listed as they are first touched, so finding the scored documents
+// and clearing them for the next query only costs as much as the documents matched, not the collection.
+public class ScoreAccumulator {
+    private final double[] scores;
+    private final boolean[] scored;
+    private final int[] touched;
+    private int numTouched = 0;
+
+    public ScoreAccumulator(int numDocuments) {
+        this.scores = new double[numDocuments];
+        this.scored = new boolean[numDocuments];
+        this.touched = new int[numDocuments];
+    }
+
+    public int capacity() {
+        return scores.length;
+    }
+
+    // The first score of a document is stored as is, later ones are added to it
+    public void add(int docID, double score) {
+        if (scored[docID]) {
+            scores[docID] += score;
+        } else {
+            scored[docID] = true;
+            scores[docID] = score;
+            touched[numTouched++] = docID;
+        }
+    }
+
+    // Number of documents that have a score
+    public int size() {
+        return numTouched;
+    }
+
+    // Docid of the i-th document to be given a score
+    public int docID(int i) {
+        return touched[i];
+    }
+
+    public double score(int docID) {
+        return scores[docID];
+    }
+
+    public void clear() {
+        for (int i = 0; i < numTouched; i++) {
+            scored[touched[i]] = false;
+            scores[touched[i]] = 0;
+        }
+        numTouched = 0;
+    }
+}
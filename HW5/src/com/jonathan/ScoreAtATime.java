@@ -0,0 +1,112 @@
+package com.jonathan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+// Score at a time BM25 over an impact ordered index (Anh and Moffat, 2006). The segments of all the query
+// terms are processed in decreasing order of what each of their postings adds to a score, the impact of the
+// segment times the query weight of its term, so the postings that matter most are scored first. Processing
+// can stop after a budget of postings or a deadline, and the top k is then taken from what has been scored so
+// far, which makes the work done per query bounded while the ranking degrades gradually. With no budget every
+// posting is scored, and the ranking is that of the quantized impacts, which can differ from calculateBM25
+// for documents whose scores are close.
+public class ScoreAtATime {
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    // Postings scored between looks at the clock within a segment
+    private static final int DEADLINE_CHECK_INTERVAL = 4096;
+
+    // Whether any query term has postings in impacts. Terms with a negative idf have none, so a query made only
+    // of them, such as one of frequent words, cannot be ranked score at a time
+    public static boolean hasImpacts(List<String> queryTokens, BinaryIndex index, ImpactIndex impacts) {
+        for (String token : queryTokens) {
+            int termID = index.termID(token);
+            if (termID >= 0 && impacts.numSegments(termID) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Scores at most postingsBudget postings, and stops once timeBudgetNanos have passed, checking between
+    // segments and every DEADLINE_CHECK_INTERVAL postings. The first segment is always scored, so a query that
+    // misses its deadline still gets its best postings ranked. Either can be UNLIMITED. stats records whether the
+    // deadline was missed
+    public static RankedList calculateBM25(List<String> queryTokens, BinaryIndex index, ImpactIndex impacts, int k,
+                                           long postingsBudget, long timeBudgetNanos, QueryStats stats) {
+        long start = System.nanoTime();
+
+        // Segments of the distinct query terms that are in the lexicon, with what each posting of them adds
+        List<String> distinct = new ArrayList<>();
+        List<int[]> segments = new ArrayList<>();
+        List<Double> contributions = new ArrayList<>();
+        for (String token : queryTokens) {
+            int termID = index.termID(token);
+            if (termID < 0 || distinct.contains(token)) {
+                continue;
+            }
+            distinct.add(token);
+            int qf = Collections.frequency(queryTokens, token);
+            double weight = qf * BM25.queryTf(qf);
+            for (int segment = 0; segment < impacts.numSegments(termID); segment++) {
+                segments.add(new int[] {termID, segment});
+                contributions.add(impacts.impact(termID, segment) * weight);
+            }
+        }
+        Integer[] order = new Integer[segments.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(contributions::get).reversed());
+
+        ScoreAccumulator docScore = BM25.accumulator(index.numDocuments());
+        int[] docIDs = new int[1024];
+        long scored = 0;
+        boolean deadlineMissed = false;
+        processing:
+        for (int i : order) {
+            if (scored >= postingsBudget) {
+                break;
+            }
+            if (scored > 0 && System.nanoTime() - start > timeBudgetNanos) {
+                deadlineMissed = true;
+                break;
+            }
+            int termID = segments.get(i)[0];
+            int segment = segments.get(i)[1];
+            int numPostings = impacts.numPostings(termID, segment);
+            if (numPostings > docIDs.length) {
+                docIDs = new int[Math.max(numPostings, 2 * docIDs.length)];
+            }
+            impacts.docIDs(termID, segment, docIDs);
+
+            double contribution = contributions.get(i);
+            int limit = (int) Math.min(numPostings, postingsBudget - scored);
+            for (int p = 0; p < limit; p++) {
+                docScore.add(docIDs[p], contribution);
+                if ((p + 1) % DEADLINE_CHECK_INTERVAL == 0 && scored > 0 && System.nanoTime() - start > timeBudgetNanos) {
+                    scored += p + 1;
+                    deadlineMissed = true;
+                    break processing;
+                }
+            }
+            scored += limit;
+        }
+
+        if (stats != null) {
+            stats.postingsScored += scored;
+            stats.documentsScored += docScore.size();
+            stats.deadlineMissed |= deadlineMissed;
+        }
+        TopK topK = new TopK(k, index::docno);
+        double scale = impacts.scale();
+        for (int i = 0; i < docScore.size(); i++) {
+            int docid = docScore.docID(i);
+            topK.add(docid, docScore.score(docid) * scale);
+        }
+        return topK.ranked();
+    }
+}
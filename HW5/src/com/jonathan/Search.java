@@ -5,229 +5,196 @@ import java.util.*;
 
 public class Search {
 
-    // Create class for each entry in the priority queue, containing a sentence and a score
-    public static class PriorityQueueEntry implements Comparable<PriorityQueueEntry> {
-
-        public PriorityQueueEntry(int score, String sentence) {
-            this._score = score;
-            this._sentence = sentence;
-        }
-
-        private final int _score;
-        private final String _sentence;
-
-
-        public int getScore() {
-            return _score;
-        }
-        public String getSentence() {
-            return _sentence;
-        }
-
-        // Sort the priority queue in descending order
-        @Override
-        public int compareTo(PriorityQueueEntry obj) {
-            return this.getScore() < obj.getScore() ? 1 : -1;
-        }
-    }
-
     public static void main(String[] args) throws Exception {
 
         // Input argument checking
-        if (args.length != 1) {
+        if (args.length < 1) {
             System.out.printf("ERROR: Wrong number of arguments passed in! Expected: 2. Received: %d%n", args.length);
             System.out.println("First parameter: path to the indexed data");
+            System.out.println("Optional: --postings-budget=N to score at most N postings per query from impacts.bin");
+            System.out.println("Optional: --deadline-ms=N to stop scoring postings from impacts.bin after N milliseconds");
+            System.out.println("Optional: --postings-cache-mb=N to take decoded postings from a cache of N MB");
+            System.out.println("Optional: --document-cache-mb=N to keep recently read documents in N MB (default: 32, 0 for none)");
+            System.out.println("Optional: --result-cache-mb=N to keep the results of recent queries in N MB (default: 16, 0 for none)");
             System.exit(1);
         }
 
         String indexedDataPath = args[0];
+        HashMap<String, String> options = IndexEngine.parseOptions(args, 1, "postings-budget", "deadline-ms", "result-cache-mb", "postings-cache-mb", "document-cache-mb");
+        long postingsBudget = Long.parseLong(options.getOrDefault("postings-budget", Long.toString(ScoreAtATime.UNLIMITED)));
+        long timeBudgetNanos = options.containsKey("deadline-ms")
+                ? Long.parseLong(options.get("deadline-ms")) * 1_000_000 : ScoreAtATime.UNLIMITED;
+        long resultCacheBytes = Long.parseLong(options.getOrDefault("result-cache-mb", "16")) * 1024 * 1024;
+        QueryResultCache resultCache = resultCacheBytes > 0 ? new QueryResultCache(resultCacheBytes) : null;
+        long postingsCacheBytes = Long.parseLong(options.getOrDefault("postings-cache-mb", "0")) * 1024 * 1024;
+        long documentCacheBytes = Long.parseLong(options.getOrDefault("document-cache-mb", "32")) * 1024 * 1024;
+
+        // Reading in the index
+        try {
+            BinaryIndex index = BinaryIndex.open(indexedDataPath);
+            Scanner reader = new Scanner(System.in);
+            PostingsCache postingsCache = postingsCacheBytes > 0 ? new PostingsCache(index, postingsCacheBytes) : null;
+
+            // Documents come from the document store, or from their own files if it was not built
+            DocumentStore documentStore = DocumentStore.open(indexedDataPath);
+            DocumentCache documentCache = new DocumentCache(indexedDataPath, index, documentStore, documentCacheBytes);
+
+            // Summaries are scored from the sentences found at index time when there are any
+            SentenceStore sentences = SentenceStore.open(indexedDataPath, index);
+
+            // Quoted phrases are matched from the token positions, if the index has them
+            PositionsIndex positions = PositionsIndex.open(indexedDataPath, index);
+
+            // A budget or deadline bounds the work per query by scoring postings in impact order
+            ImpactIndex impacts = null;
+            if (options.containsKey("postings-budget") || options.containsKey("deadline-ms")) {
+                impacts = ImpactIndex.open(indexedDataPath, index);
+                if (impacts == null) {
+                    System.out.printf("ERROR: %s has no %s. Build it with ImpactIndexWriter or IndexEngine --impacts%n", indexedDataPath, ImpactIndex.FILE_NAME);
+                    System.exit(1);
+                }
+            }
+
+            List<Integer> foundDocIDs = searchQuery(documentCache, reader, index, impacts, postingsBudget, timeBudgetNanos, resultCache, postingsCache, sentences, positions);
+            while (true) {
+                System.out.println("Enter [#] rank to view more info. [n] for new search. [q] to quit. ");
+                String input = reader.nextLine();
 
-        try (FileInputStream lexiconFIS = new FileInputStream(indexedDataPath + "/lexicon.txt");
-             ObjectInputStream lexiconOIS = new ObjectInputStream(lexiconFIS)) {
-            @SuppressWarnings("unchecked")
-            HashMap<String, Integer> lexicon = (HashMap<String, Integer>) lexiconOIS.readObject();
-
-            // Reading in the idMapping
-            try (FileInputStream mappingFIS = new FileInputStream(indexedDataPath + "/idMapping.txt");
-                 ObjectInputStream mappingOIS = new ObjectInputStream(mappingFIS)) {
-                @SuppressWarnings("unchecked")
-                HashMap<Integer, String> idMap = (HashMap<Integer, String>) mappingOIS.readObject();
-
-                // Reading in the inverted index
-                try (FileInputStream invIndexFIS = new FileInputStream(indexedDataPath + "/invIndex.txt");
-                     BufferedInputStream invIndexBIS = new BufferedInputStream(invIndexFIS);
-                     ObjectInputStream invIndexOIS = new ObjectInputStream(invIndexBIS)) {
-                    @SuppressWarnings("unchecked")
-                    HashMap<Integer, List<Integer>> invIndex = (HashMap<Integer, List<Integer>>) invIndexOIS.readObject();
-
-                    // Read in the mapping of docid to document length
-                    try (FileInputStream docLengthFIS = new FileInputStream(indexedDataPath + "/documentLength.txt");
-                         ObjectInputStream docLengthOIS = new ObjectInputStream(docLengthFIS)) {
-                        @SuppressWarnings("unchecked")
-                        HashMap<String, Integer> documentLengthMap = (HashMap<String, Integer>) docLengthOIS.readObject();
-
-                        int totalDocLength = 0;
-                        for (int length : documentLengthMap.values()) {
-                            totalDocLength += length;
-                        }
-                        double avgDocLength = (double) totalDocLength / documentLengthMap.size();
-                        Scanner reader = new Scanner(System.in);
-
-                        List<String> foundDocnos = searchQuery(indexedDataPath, reader, avgDocLength, lexicon, invIndex, documentLengthMap, idMap);
-                        while (true) {
-                            System.out.println("Enter [#] rank to view more info. [n] for new search. [q] to quit. ");
-                            String input = reader.nextLine();
-
-                            // Quit the program when q or Q is entered
-                            if (input.toLowerCase().equals("q")) {
-                                System.out.println("Quitting");
-                                reader.close();
-                                System.exit(0);
-                            }
-
-                            // Search for a new query when n or N is entered
-                            if (input.toLowerCase().equals("n")) {
-                                foundDocnos = searchQuery(indexedDataPath, reader, avgDocLength, lexicon, invIndex, documentLengthMap, idMap);
-                                continue;
-                            }
-
-                            // Otherwise try retrieving the desired document
-                            try {
-                                int desiredRank = Integer.parseInt(input);
-                                if (foundDocnos.size() >= desiredRank && desiredRank > 0) {
-                                    String desiredDocno = foundDocnos.get(desiredRank-1);
-                                    String fullDocument = GetDoc.getDoc(indexedDataPath, desiredDocno);
-                                    System.out.println(fullDocument);
-                                } else {
-                                    System.out.println("Invalid number. Try again.");
-                                }
-                            } catch (NumberFormatException e) {
-                                System.out.println("Invalid value. Try again.");
-                            }
-                        }
-                    } catch (Exception e) {
-                        System.out.println("ERROR: Unable to get document length");
-                        e.printStackTrace();
+                // Quit the program when q or Q is entered
+                if (input.toLowerCase().equals("q")) {
+                    if (resultCache != null) {
+                        System.out.println("Result cache: " + resultCache);
+                    }
+                    if (postingsCache != null) {
+                        System.out.println("Postings cache: " + postingsCache);
                     }
-                } catch (Exception e) {
-                    System.out.println("ERROR: Unable to get inverted index");
-                    e.printStackTrace();
+                    if (documentCacheBytes > 0) {
+                        System.out.println("Document cache: " + documentCache);
+                    }
+                    System.out.println("Quitting");
+                    reader.close();
+                    System.exit(0);
+                }
+
+                // Search for a new query when n or N is entered
+                if (input.toLowerCase().equals("n")) {
+                    foundDocIDs = searchQuery(documentCache, reader, index, impacts, postingsBudget, timeBudgetNanos, resultCache, postingsCache, sentences, positions);
+                    continue;
+                }
+
+                // Otherwise try retrieving the desired document
+                try {
+                    int desiredRank = Integer.parseInt(input);
+                    if (foundDocIDs.size() >= desiredRank && desiredRank > 0) {
+                        int desiredDocID = foundDocIDs.get(desiredRank-1);
+                        String fullDocument = documentCache.get(desiredDocID).getRaw();
+                        System.out.println(fullDocument);
+                    } else {
+                        System.out.println("Invalid number. Try again.");
+                    }
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid value. Try again.");
                 }
-            } catch (Exception e) {
-                System.out.println("ERROR: Unable to get docid mapping");
-                e.printStackTrace();
             }
         } catch (Exception e) {
-            System.out.println("ERROR: Unable to get lexicon");
+            System.out.println("ERROR: Unable to get index");
             e.printStackTrace();
         }
     }
 
-    // Gets the top 10 results for a query
-    public static List<String> searchQuery(String indexedDataPath, Scanner reader, double avgDocLength, HashMap<String, Integer> lexicon,
-                                           HashMap<Integer, List<Integer>> invIndex, HashMap<String, Integer> documentLengthMap,
-                                           HashMap<Integer, String> idMap) {
+    // Gets the top 10 results for a query. Prints the results of a query that is in resultCache without ranking
+    // it or reading its documents, and caches the results of one that is not, unless the deadline cut its
+    // ranking short. Without impacts, ranks with QueryProcessor.AUTO, taking decoded postings from
+    // postingsCache. The documents are read through documentCache, and their summaries are scored from
+    // sentences. Quoted phrases are ranked term at a time from positions, whether or not there are impacts, and
+    // are searched for as separate words if it is null. resultCache, postingsCache, sentences and positions may
+    // be null. Returns the internal ids of the results in rank order
+    public static List<Integer> searchQuery(DocumentCache documentCache, Scanner reader, BinaryIndex index,
+                                           ImpactIndex impacts, long postingsBudget, long timeBudgetNanos,
+                                           QueryResultCache resultCache, PostingsCache postingsCache,
+                                           SentenceStore sentences, PositionsIndex positions) {
 
         System.out.println("Enter your query: ");
         String queryTerms = reader.nextLine();
         long startTime = System.currentTimeMillis();
 
-        // Tokenizing the query
-        List<String> queryTokens = new ArrayList<>();
-        IndexEngine.tokenize(queryTerms, queryTokens, false);
+        // Tokenizing the query, keeping the tokens of quoted phrases together
+        PhraseQuery query = PhraseQuery.parse(queryTerms, false);
+        List<String> queryTokens = query.tokens();
+        boolean phrases = query.hasPhrases() && positions != null;
+        if (query.hasPhrases() && positions == null) {
+            System.out.printf("The index has no %s, so phrases are searched for as separate words. Build it with PositionsIndexWriter or IndexEngine --positions%n",
+                    PositionsIndex.FILE_NAME);
+        }
+        List<String> cacheKey = phrases ? query.cacheKey() : queryTokens;
+
+        QueryResultCache.Results cached = resultCache != null ? resultCache.get(cacheKey) : null;
+        if (cached != null) {
+            List<Integer> foundDocIDs = new ArrayList<>();
+            for (int i = 0; i < cached.size(); i++) {
+                System.out.print(cached.getRendered(i));
+                foundDocIDs.add(cached.getDocID(i));
+            }
+            long endTime = System.currentTimeMillis();
+            System.out.println("Retrieval took " + (endTime-startTime)/1000.0 + " seconds (cached)");
+            return foundDocIDs;
+        }
 
         // Calculate BM25 scores
-        Map<String, Double> bm25Scores = BM25.calculateBM25(avgDocLength, queryTokens, lexicon, invIndex, documentLengthMap, idMap);
+        // Terms with a negative idf have no impacts, so a query of only those is ranked from index.bin
+        boolean scoreAtATime = impacts != null && !phrases && ScoreAtATime.hasImpacts(queryTokens, index, impacts);
+        if (impacts != null && !phrases && !scoreAtATime) {
+            System.out.println("No query term has impacts, so the query is ranked without the budget or deadline");
+        }
+        RankedList results;
+        QueryStats stats = new QueryStats();
+        if (phrases) {
+            results = query.calculateBM25(index, positions, postingsCache, 10);
+        } else if (scoreAtATime) {
+            results = ScoreAtATime.calculateBM25(queryTokens, index, impacts, 10, postingsBudget, timeBudgetNanos, stats);
+        } else {
+            results = QueryProcessor.AUTO.calculateBM25(queryTokens, index, postingsCache, 10, null);
+        }
 
         // Printing the top 10 results
-        int stopResultNumber = Math.min(bm25Scores.size(), 10);
-        List<String> foundDocnos = new ArrayList<>();
-        for (int i = 0; i < stopResultNumber; i++) {
-            String docno = (String) bm25Scores.keySet().toArray()[i];
-            String doc = GetDoc.getDoc(indexedDataPath, docno);
-            StringBuffer docSB = new StringBuffer(doc);
-            String headline = IndexEngine.getHeadline(docSB);
-            String summary = determineQueryBiasedSummary(queryTokens, IndexEngine.getText(docSB));
+        List<Integer> foundDocIDs = new ArrayList<>();
+        String[] rendered = new String[results.size()];
+        SummaryGenerator summaryGenerator = new SummaryGenerator(queryTokens);
+        for (int i = 0; i < results.size(); i++) {
+            int docID = results.docID(i);
+            String docno = index.docno(docID);
+            DocumentCache.Document doc = documentCache.get(docID);
+            String headline = doc.getHeadline();
+            String summary = sentences != null
+                    ? summaryGenerator.summarize(doc.getText(), sentences, docID)
+                    : summaryGenerator.summarize(doc.getText());
             if (headline.equals("")) {
                 headline = summary.substring(0, Math.min(summary.length(), 50)) + " ...";
             }
-            String date = IndexEngine.getFormattedDate(docno);
-            System.out.printf("%s. %s; (%s)\n%s(%s)\n", i+1, headline, date, summary, docno);
-            foundDocnos.add(docno);
+            String date = doc.getDate();
+            rendered[i] = String.format("%s. %s; (%s)\n%s(%s)\n", i+1, headline, date, summary, docno);
+            System.out.print(rendered[i]);
+            foundDocIDs.add(docID);
+        }
+        // A ranking cut short by the deadline is not cached, since the query may finish next time
+        if (resultCache != null && !stats.deadlineMissed()) {
+            int[] docIDs = new int[results.size()];
+            double[] scores = new double[results.size()];
+            for (int i = 0; i < results.size(); i++) {
+                docIDs[i] = results.docID(i);
+                scores[i] = results.score(i);
+            }
+            resultCache.put(cacheKey, new QueryResultCache.Results(docIDs, scores, rendered));
         }
         long endTime = System.currentTimeMillis();
         System.out.println("Retrieval took " + (endTime-startTime)/1000.0 + " seconds");
 
-        return foundDocnos;
+        return foundDocIDs;
     }
 
-    // Creates the query biased summary for an input text
+    // Creates the query biased summary for an input text. Summaries for several texts are made faster by
+    // keeping a SummaryGenerator for the query
     public static String determineQueryBiasedSummary(List<String> queryTokens, String text) {
-        String[] sentences = text.split("(?<=[.!?])");
-        PriorityQueue<PriorityQueueEntry> sentencePriority = new PriorityQueue<>();
-
-        int skippedSentences = 0;
-        for (int i = 0; i < sentences.length; i++) {
-            sentences[i] = sentences[i].trim();
-
-            // Skip sentences that have less than 5 words
-            if (sentences[i].split("\\s+").length < 5) {
-                skippedSentences++;
-                continue;
-            }
-            List<String> sentenceTokens = new ArrayList<>();
-            IndexEngine.tokenize(sentences[i], sentenceTokens, false);
-            int l = 0, c = 0, d = 0, k = 0, temp = 0;
-            boolean contiguous = false;
-
-            // Assign scores for first and second non-skipped sentences
-            if ((i-skippedSentences) == 0) {
-                l = 2;
-            } else if ((i-skippedSentences) == 1) {
-                l = 1;
-            }
-
-            // Increment c for the number of query words that are in the sentence
-            for (String queryToken : queryTokens) {
-                c += Collections.frequency(sentenceTokens, queryToken);
-            }
-
-            // Increment d for each unique query term in the sentence
-            Set<String> uniqueQueryTokens = new HashSet<>(queryTokens);
-            for (String uniqueQueryToken : uniqueQueryTokens) {
-                if (sentenceTokens.contains(uniqueQueryToken)) {
-                    d += 1;
-                }
-            }
-
-            // Determine longest contiguous run of query terms in the sentence
-            for (String sentenceToken : sentenceTokens) {
-                if (queryTokens.contains(sentenceToken)) {
-                    temp +=1;
-                    if (!contiguous) {
-                        contiguous = true;
-                    }
-                    k = Math.max(temp, k);
-                } else {
-                    contiguous = false;
-                    temp = 0;
-                }
-            }
-
-            // The score of a sentence is the combination of all the parameters
-            int v = c + d + k + l;
-            sentencePriority.add(new PriorityQueueEntry(v, sentences[i]));
-        }
-
-        // Form summary from the two highest scored sentences
-        int i = 0;
-        StringBuilder summary = new StringBuilder();
-        while (!sentencePriority.isEmpty() && i < 2) {
-            String sentence = sentencePriority.poll().getSentence();
-            summary.append(sentence);
-            summary.append(" ");
-            i++;
-        }
-        return summary.toString();
+        return new SummaryGenerator(queryTokens).summarize(text);
     }
 }
@@ -0,0 +1,114 @@
+package com.jonathan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.jonathan.TermTokenizer.ASCII_FAST_PATH;
+import static com.jonathan.TermTokenizer.ASCII_LOWER;
+
+// Splits a text into the sentences that a query biased summary chooses from, in one pass over its chars.
+// Sentences end after every '.', '!' or '?', as text.split("(?<=[.!?])") splits them, are trimmed as
+// String.trim trims them, and sentences of fewer than MIN_WORDS words, split on whitespace, are skipped.
+// The tokens of each sentence are handed to addToken as lowercased chars, the same tokens IndexEngine.tokenize
+// gives, without making a String. Sentences with non-ASCII chars go through IndexEngine.tokenize, as
+// TermTokenizer does.
+//
+// For every sentence startTokens() is called and then addToken() for its tokens. startTokens() can be called
+// again for the same sentence to start its tokens over, and a sentence that is skipped has its tokens handed
+// over but is never added, so the tokens since the last startTokens() belong to the sentence passed to
+// addSentence(). Not thread safe.
+public abstract class SentenceSplitter {
+    static final int MIN_WORDS = 5;
+
+    private char[] token = new char[64];
+
+    // Start the tokens of a sentence, dropping any since the last call
+    protected abstract void startTokens();
+
+    // The next token of the sentence, its lowercased chars in chars[0, length) and hash their TermTable.hash
+    protected abstract void addToken(char[] chars, int length, int hash);
+
+    // The sentence text[start, end) with the tokens since startTokens() is not skipped
+    protected abstract void addSentence(int start, int end);
+
+    public void split(String text) {
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            if (ch == '.' || ch == '!' || ch == '?') {
+                splitSentence(text, start, i + 1);
+                start = i + 1;
+            }
+        }
+        if (start < length) {
+            splitSentence(text, start, length);
+        }
+    }
+
+    private void splitSentence(String text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        startTokens();
+        int words = 0;
+        boolean inWord = false;
+        boolean ascii = ASCII_FAST_PATH;
+        int tokenLength = 0;
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            char ch = text.charAt(i);
+
+            // Words as split("\\s+") counts them
+            boolean space = ch == ' ' || ch == '\t' || ch == '\n' || ch == 0x0B || ch == '\f' || ch == '\r';
+            if (!space && !inWord) {
+                words++;
+            }
+            inWord = !space;
+
+            if (!ascii) {
+                continue;
+            }
+            if (ch >= 128) {
+                ascii = false;
+                continue;
+            }
+            char lower = ASCII_LOWER[ch];
+            if (lower == 0) {
+                if (tokenLength > 0) {
+                    addToken(token, tokenLength, hash);
+                    tokenLength = 0;
+                    hash = 0;
+                }
+                continue;
+            }
+            if (tokenLength == token.length) {
+                token = Arrays.copyOf(token, token.length * 2);
+            }
+            token[tokenLength++] = lower;
+            hash = 31 * hash + lower;
+        }
+        if (words < MIN_WORDS) {
+            return;
+        }
+        if (ascii) {
+            if (tokenLength > 0) {
+                addToken(token, tokenLength, hash);
+            }
+        } else {
+            startTokens();
+            List<String> sentenceTokens = new ArrayList<>();
+            IndexEngine.tokenize(text.substring(start, end), sentenceTokens, false);
+            for (String sentenceToken : sentenceTokens) {
+                char[] chars = sentenceToken.toCharArray();
+                addToken(chars, chars.length, TermTable.hash(chars, 0, chars.length));
+            }
+        }
+        addSentence(start, end);
+    }
+}
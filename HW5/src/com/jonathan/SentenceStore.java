@@ -0,0 +1,194 @@
+package com.jonathan;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Reader for sentences.bin, the sentences of the TEXT of every document that a query biased summary chooses
+// from (see SentenceSplitter), with the bounds of each sentence in the text and the ids of its tokens. Search
+// scores the sentences of a document from it without splitting or tokenizing the text, and only makes Strings
+// of the two it picks. Token ids are those of a vocabulary of the unstemmed tokens of the sentences, kept in
+// the file, since summaries match the query tokens before stemming whether or not the index is stemmed.
+//
+// Layout, all ints and longs big endian:
+//   header     [magic, version, number of documents, number of terms, offsets (long) of the document
+//               offsets and vocabulary sections, file length (long)]
+//   documents  per document as variable byte codes: [length of the text, number of sentences] then for each
+//              sentence [start - end of the last sentence, end - start, number of tokens, token ids]
+//   offsets    [offset of every document] then the end of the last one
+//   vocabulary [byte offset of every term in id order] then the end of the term bytes, [term ids in unsigned
+//              UTF-8 order of their terms], then the UTF-8 terms in id order
+public class SentenceStore {
+    public static final String FILE_NAME = "sentences.bin";
+
+    static final int MAGIC = 0x4A53454E;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 40;
+
+    private final MappedByteBuffer buffer;
+    private final int numDocuments;
+    private final int numTerms;
+    private final int documentOffsets;
+    private final int termOffsets;
+    private final int sortedTerms;
+    private final int termBytes;
+
+    private SentenceStore(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(String.format("%s is too large to map", file));
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(String.format("%s is not a sentence file", file));
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException(String.format("%s is version %d of the sentence format but version %d is expected. Delete it and run SentenceStoreWriter on the indexed data",
+                    file, buffer.getInt(4), VERSION));
+        }
+        if (buffer.getLong(32) != buffer.capacity()) {
+            throw new IOException(String.format("%s is truncated", file));
+        }
+        numDocuments = buffer.getInt(8);
+        numTerms = buffer.getInt(12);
+        documentOffsets = (int) buffer.getLong(16);
+        termOffsets = (int) buffer.getLong(24);
+        sortedTerms = termOffsets + 4 * (numTerms + 1);
+        termBytes = sortedTerms + 4 * numTerms;
+    }
+
+    // Open the sentences.bin of the indexed data, or return null if it has none
+    public static SentenceStore open(String indexedDataPath, BinaryIndex index) throws IOException {
+        Path file = Paths.get(indexedDataPath, FILE_NAME);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        SentenceStore sentences = new SentenceStore(file);
+        if (sentences.numDocuments != index.numDocuments()) {
+            throw new IOException(String.format("%s was not written for the index next to it. Delete it and run SentenceStoreWriter on the indexed data", file));
+        }
+        return sentences;
+    }
+
+    public int numDocuments() {
+        return numDocuments;
+    }
+
+    // Id of a token in the vocabulary, or -1 if no sentence has it
+    public int termID(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = numTerms - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int termID = buffer.getInt(sortedTerms + 4 * mid);
+            int cmp = compareTerm(termID, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return termID;
+            }
+        }
+        return -1;
+    }
+
+    // Length of the TEXT of the document the sentences were taken from
+    public int textLength(int docID) {
+        return new Cursor(docID).textLength;
+    }
+
+    // The sentences of a document, in text order
+    public Cursor sentences(int docID) {
+        return new Cursor(docID);
+    }
+
+    // Walks the sentences of a document and the token ids of each, decoding them as it goes
+    public class Cursor {
+        private int position;
+        private final int textLength;
+        private int sentencesLeft;
+        private int tokensLeft = 0;
+        private int start = 0;
+        private int end = 0;
+
+        private Cursor(int docID) {
+            if (docID < 0 || docID >= numDocuments) {
+                throw new IllegalArgumentException(String.format("No document with id %d", docID));
+            }
+            position = buffer.getInt(documentOffsets + 4 * docID);
+            textLength = readVByte();
+            sentencesLeft = readVByte();
+        }
+
+        public int textLength() {
+            return textLength;
+        }
+
+        // Move to the next sentence, skipping any tokens of this one that were not read
+        public boolean nextSentence() {
+            while (tokensLeft > 0) {
+                nextToken();
+            }
+            if (sentencesLeft == 0) {
+                return false;
+            }
+            sentencesLeft--;
+            start = end + readVByte();
+            end = start + readVByte();
+            tokensLeft = readVByte();
+            return true;
+        }
+
+        // The sentence is text.substring(start(), end())
+        public int start() {
+            return start;
+        }
+
+        public int end() {
+            return end;
+        }
+
+        public int tokensLeft() {
+            return tokensLeft;
+        }
+
+        public int nextToken() {
+            tokensLeft--;
+            return readVByte();
+        }
+
+        private int readVByte() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    // Compare the bytes of a vocabulary term to the key as unsigned bytes
+    private int compareTerm(int termID, byte[] key) {
+        int start = buffer.getInt(termOffsets + 4 * termID);
+        int length = buffer.getInt(termOffsets + 4 * (termID + 1)) - start;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(buffer.get(termBytes + start + i) & 0xFF, key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+}
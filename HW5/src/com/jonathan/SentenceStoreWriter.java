@@ -0,0 +1,190 @@
+package com.jonathan;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.jonathan.SentenceStore.*;
+
+// Writes sentences.bin, read by SentenceStore, from the documents in the document store. The TEXT of every
+// document is split into sentences with SentenceSplitter and the tokens of each sentence are given ids in a
+// vocabulary of their own. IndexEngine writes it with --sentences, and it can be added to an index later by
+// running this class on the indexed data.
+public class SentenceStoreWriter {
+    public static void main(String[] args) {
+
+        // Input argument checking
+        if (args.length != 1) {
+            System.out.println(String.format("ERROR: Wrong number of arguments passed in! Expected: 1. Received: %d", args.length));
+            System.out.println("First parameter: path to the indexed data");
+            System.exit(1);
+        }
+
+        String indexedDataPath = args[0];
+        if (Files.exists(Paths.get(indexedDataPath, SentenceStore.FILE_NAME))) {
+            System.out.println(String.format("ERROR: %s already exists!", SentenceStore.FILE_NAME));
+            System.exit(1);
+        }
+
+        try {
+            long startTime = System.currentTimeMillis();
+            write(indexedDataPath);
+            long endTime = System.currentTimeMillis();
+            System.out.println(String.format("Wrote %s in %.2f seconds", SentenceStore.FILE_NAME, (endTime - startTime) / 1000.0));
+        } catch (IOException e) {
+            System.out.println("ERROR: Unable to write the sentence file");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    // Write the sentences.bin of the indexed data from its document store
+    public static void write(String indexedDataPath) throws IOException {
+        DocumentStore documentStore = DocumentStore.open(indexedDataPath);
+        if (documentStore == null) {
+            throw new IOException(String.format("%s has no document store to read the documents from", indexedDataPath));
+        }
+        int numDocuments = documentStore.numDocuments();
+        DocumentScanner scanner = new DocumentScanner();
+        Encoder encoder = new Encoder();
+
+        String file = Paths.get(indexedDataPath, SentenceStore.FILE_NAME).toString();
+        try (FileOutputStream fos = new FileOutputStream(file);
+             DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos, PostingsFile.BUFFER_SIZE))) {
+            dos.write(new byte[HEADER_SIZE]);
+            long position = HEADER_SIZE;
+
+            long[] documentOffsets = new long[numDocuments + 1];
+            for (int id = 0; id < numDocuments; id++) {
+                documentOffsets[id] = position;
+                scanner.scan(documentStore.getDocument(id));
+                int length = encoder.encode(scanner.getField(DocumentScanner.TEXT));
+                dos.write(encoder.encoded, 0, length);
+                position += length;
+            }
+            documentOffsets[numDocuments] = position;
+            if (position > Integer.MAX_VALUE) {
+                throw new IOException(String.format("%s would be too large to map", file));
+            }
+
+            long offsetsOffset = position;
+            for (long offset : documentOffsets) {
+                dos.writeInt((int) offset);
+            }
+            position += 4L * (numDocuments + 1);
+
+            // Term byte offsets in id order, the ids in term order, then the terms
+            long vocabularyOffset = position;
+            int numTerms = encoder.terms.size();
+            byte[][] termBytes = new byte[numTerms][];
+            Integer[] order = new Integer[numTerms];
+            int termOffset = 0;
+            for (int termID = 0; termID < numTerms; termID++) {
+                termBytes[termID] = encoder.terms.get(termID).getBytes(StandardCharsets.UTF_8);
+                order[termID] = termID;
+                dos.writeInt(termOffset);
+                termOffset += termBytes[termID].length;
+            }
+            dos.writeInt(termOffset);
+            Arrays.sort(order, (lhs, rhs) -> Arrays.compareUnsigned(termBytes[lhs], termBytes[rhs]));
+            for (int termID : order) {
+                dos.writeInt(termID);
+            }
+            for (byte[] bytes : termBytes) {
+                dos.write(bytes);
+            }
+            position += 4L * (numTerms + 1) + 4L * numTerms + termOffset;
+            dos.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(numDocuments);
+            header.putInt(numTerms);
+            header.putLong(offsetsOffset);
+            header.putLong(vocabularyOffset);
+            header.putLong(position);
+            header.flip();
+            fos.getChannel().write(header, 0);
+        }
+        documentStore.close();
+    }
+
+    // Splits the text of a document and encodes its sentences, giving each new token the next id
+    private static class Encoder extends SentenceSplitter {
+        private final TermTable termIDs = new TermTable();
+        private final List<String> terms = new ArrayList<>();
+
+        private byte[] encoded = new byte[1024];
+        private int numSentences;
+        private int lastEnd;
+
+        // Token ids of the current sentence, and the sentences of the document once encoded
+        private int[] tokens = new int[64];
+        private int numTokens;
+        private byte[] sentences = new byte[1024];
+        private int sentencesLength;
+
+        // Encode the sentences of the text into encoded, returning the number of bytes
+        int encode(String text) {
+            numSentences = 0;
+            lastEnd = 0;
+            sentencesLength = 0;
+            split(text);
+
+            ensureCapacity(10 + sentencesLength);
+            int length = BinaryIndexWriter.writeVByte(encoded, 0, text.length());
+            length = BinaryIndexWriter.writeVByte(encoded, length, numSentences);
+            System.arraycopy(sentences, 0, encoded, length, sentencesLength);
+            return length + sentencesLength;
+        }
+
+        @Override
+        protected void startTokens() {
+            numTokens = 0;
+        }
+
+        @Override
+        protected void addToken(char[] chars, int tokenLength, int hash) {
+            int termID = termIDs.get(chars, 0, tokenLength, hash);
+            if (termID < 0) {
+                termID = terms.size();
+                terms.add(new String(chars, 0, tokenLength));
+                termIDs.put(chars, 0, tokenLength, hash, termID);
+            }
+            if (numTokens == tokens.length) {
+                tokens = Arrays.copyOf(tokens, tokens.length * 2);
+            }
+            tokens[numTokens++] = termID;
+        }
+
+        @Override
+        protected void addSentence(int start, int end) {
+            if (sentences.length - sentencesLength < 5 * (numTokens + 3)) {
+                sentences = Arrays.copyOf(sentences, Math.max(sentences.length * 2, sentencesLength + 5 * (numTokens + 3)));
+            }
+            sentencesLength = BinaryIndexWriter.writeVByte(sentences, sentencesLength, start - lastEnd);
+            sentencesLength = BinaryIndexWriter.writeVByte(sentences, sentencesLength, end - start);
+            sentencesLength = BinaryIndexWriter.writeVByte(sentences, sentencesLength, numTokens);
+            for (int i = 0; i < numTokens; i++) {
+                sentencesLength = BinaryIndexWriter.writeVByte(sentences, sentencesLength, tokens[i]);
+            }
+            lastEnd = end;
+            numSentences++;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (encoded.length < capacity) {
+                encoded = Arrays.copyOf(encoded, Math.max(capacity, encoded.length * 2));
+            }
+        }
+    }
+}
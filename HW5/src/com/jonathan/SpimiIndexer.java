@@ -0,0 +1,181 @@
+package com.jonathan;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Single-pass in-memory indexing (SPIMI). The in-memory inverted index is written out as a sorted run
+// whenever its estimated size goes over the memory budget, and the runs are k-way merged into the final
+// postings file at the end, so the heap needed for postings no longer grows with the collection.
+public class SpimiIndexer {
+    // Rough heap cost of the postings: two ints per posting with room for the array to double,
+    // and a PostingsList with its initial array for each term in the current run
+    private static final long BYTES_PER_POSTING = 12;
+    private static final long BYTES_PER_TERM = 64;
+
+    private static final int BUFFER_SIZE = PostingsFile.BUFFER_SIZE;
+
+    private final long _budgetBytes;
+    private final Path _runDirectory;
+    private final List<Path> runs = new ArrayList<>();
+    private long estimatedBytes = 0;
+
+    public SpimiIndexer(long budgetBytes, Path runDirectory) {
+        this._budgetBytes = budgetBytes;
+        this._runDirectory = runDirectory;
+    }
+
+    public int numRuns() {
+        return runs.size();
+    }
+
+    // Account for a document that was just added to the in-memory index, returning true if it should be flushed
+    public boolean recordDocument(int newPostings, int newTerms) {
+        estimatedBytes += newPostings * BYTES_PER_POSTING + newTerms * BYTES_PER_TERM;
+        return estimatedBytes >= _budgetBytes;
+    }
+
+    // Write the in-memory index to a new run sorted by term id and clear it
+    // Runs start with the number of terms in them, then use the same per term layout as the postings file:
+    // [term id, number of ints, docid, count, ...]
+    public void flush(InvertedIndex invIndex) throws IOException {
+        if (invIndex.isEmpty()) {
+            return;
+        }
+        if (runs.isEmpty()) {
+            Files.createDirectories(_runDirectory);
+        }
+        Path run = _runDirectory.resolve(String.format("run-%d.bin", runs.size()));
+
+        // The index is already laid out by term id, so the run comes out sorted
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run.toFile()), BUFFER_SIZE))) {
+            dos.writeInt(invIndex.numTermsWithPostings());
+            PostingsFile.writeTerms(invIndex, dos);
+        }
+
+        runs.add(run);
+        invIndex.clear();
+        estimatedBytes = 0;
+    }
+
+    // K-way merge of all the runs into the final postings file, then delete the runs
+    public void merge(String outputFile) throws IOException {
+        // Every open reader is in heads or sameTerm, so all of them are closed if the merge fails
+        PriorityQueue<RunReader> heads = new PriorityQueue<>();
+        List<RunReader> sameTerm = new ArrayList<>();
+        try (FileOutputStream fos = new FileOutputStream(outputFile);
+             DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos, BUFFER_SIZE))) {
+            for (int i = 0; i < runs.size(); i++) {
+                RunReader reader = new RunReader(i, runs.get(i));
+                if (reader.next()) {
+                    heads.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+
+            // The number of terms is only known at the end, so it is written over the first int then
+            int numTerms = 0;
+            dos.writeInt(numTerms);
+            while (!heads.isEmpty()) {
+                // Runs hold increasing docids, so postings of a term are concatenated in run order
+                int termID = heads.peek().termID;
+                int length = 0;
+                while (!heads.isEmpty() && heads.peek().termID == termID) {
+                    RunReader reader = heads.poll();
+                    length += reader.length;
+                    sameTerm.add(reader);
+                }
+
+                dos.writeInt(termID);
+                dos.writeInt(length);
+                numTerms++;
+                while (!sameTerm.isEmpty()) {
+                    RunReader reader = sameTerm.get(0);
+                    reader.copyPostings(dos);
+                    boolean more = reader.next();
+                    sameTerm.remove(0);
+                    if (more) {
+                        heads.add(reader);
+                    } else {
+                        reader.close();
+                    }
+                }
+            }
+            dos.flush();
+            fos.getChannel().write(ByteBuffer.allocate(4).putInt(0, numTerms), 0);
+        } finally {
+            for (RunReader reader : heads) {
+                reader.close();
+            }
+            for (RunReader reader : sameTerm) {
+                reader.close();
+            }
+        }
+
+        for (Path run : runs) {
+            Files.delete(run);
+        }
+        Files.deleteIfExists(_runDirectory);
+    }
+
+    // Sequential reader over one run, positioned on the header of its current term
+    private static class RunReader implements Comparable<RunReader> {
+        private final int _runIndex;
+        private final DataInputStream _dis;
+        private int termsLeft;
+        private int termID;
+        private int length;
+
+        public RunReader(int runIndex, Path run) throws IOException {
+            this._runIndex = runIndex;
+            this._dis = new DataInputStream(new BufferedInputStream(new FileInputStream(run.toFile()), BUFFER_SIZE));
+            try {
+                this.termsLeft = _dis.readInt();
+            } catch (IOException e) {
+                _dis.close();
+                throw e;
+            }
+        }
+
+        // Move on to the next term header, returning false after the last term of the run
+        public boolean next() throws IOException {
+            if (termsLeft == 0) {
+                return false;
+            }
+            termsLeft--;
+            termID = _dis.readInt();
+            length = _dis.readInt();
+            return true;
+        }
+
+        public void copyPostings(DataOutputStream dos) throws IOException {
+            for (int i = 0; i < length; i++) {
+                dos.writeInt(_dis.readInt());
+            }
+        }
+
+        public void close() throws IOException {
+            _dis.close();
+        }
+
+        // Order by term id, then by run so that docids stay in increasing order
+        @Override
+        public int compareTo(RunReader obj) {
+            if (this.termID != obj.termID) {
+                return Integer.compare(this.termID, obj.termID);
+            }
+            return Integer.compare(this._runIndex, obj._runIndex);
+        }
+    }
+}
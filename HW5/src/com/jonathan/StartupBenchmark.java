@@ -0,0 +1,113 @@
+package com.jonathan;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// Compares the cold start of a query tool that loads every postings list before answering anything with one
+// that only reads the postings of the query terms. Every run happens in a fresh JVM, so class loading and JIT
+// warm up are part of what is measured, as they would be for BM25 or Search. When the indexed data still has
+// the serialized HashMaps of an earlier version their load time is measured as well.
+public class StartupBenchmark {
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+
+        // Input argument checking
+        if (args.length != 2 && !(args.length == 4 && args[0].equals("--run"))) {
+            System.out.printf("ERROR: Wrong number of arguments passed in! Expected: 2. Received: %d%n", args.length);
+            System.out.println("First parameter: path to the indexed data");
+            System.out.println("Second parameter: path to the queries file");
+            System.exit(1);
+        }
+
+        // A single measurement, started by the benchmark in its own JVM
+        if (args[0].equals("--run")) {
+            run(args[1], args[2], args[3]);
+            return;
+        }
+
+        String indexedDataPath = args[0];
+        String queriesFile = args[1];
+        List<String> modes = new ArrayList<>(List.of("full", "lazy"));
+        if (Files.exists(Paths.get(indexedDataPath, "lexicon.txt"))) {
+            modes.add(0, "serialized");
+        }
+
+        System.out.println("Time to load the index and answer the first query of the queries file, each in a new JVM");
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.printf("Round %d%n", round);
+            for (String mode : modes) {
+                System.out.printf("  %-12s %s%n", mode, runInNewJVM(mode, indexedDataPath, queriesFile));
+            }
+        }
+    }
+
+    private static String runInNewJVM(String mode, String indexedDataPath, String queriesFile) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                StartupBenchmark.class.getName(), "--run", mode, indexedDataPath, queriesFile);
+        builder.redirectErrorStream(true);
+        long start = System.nanoTime();
+        Process process = builder.start();
+        String output;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            output = br.readLine();
+        }
+        process.waitFor();
+        return String.format("%s  process %8.1f ms", output, (System.nanoTime() - start) / 1e6);
+    }
+
+    private static void run(String mode, String indexedDataPath, String queriesFile) throws Exception {
+        long start = System.nanoTime();
+        List<String> queryTokens = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(queriesFile))) {
+            br.readLine();
+            IndexEngine.tokenize(br.readLine(), queryTokens, false);
+        }
+
+        long loadStart = System.nanoTime();
+        RankedList results = null;
+        long loadNanos;
+        long queryNanos = 0;
+        if (mode.equals("serialized")) {
+            // What query tools did before index.bin: deserialize everything, then load every postings list
+            readMap(indexedDataPath + "/lexicon.txt");
+            readMap(indexedDataPath + "/idMapping.txt");
+            readMap(indexedDataPath + "/documentLength.txt");
+            PostingsFile.readInvertedIndex(indexedDataPath);
+            loadNanos = System.nanoTime() - loadStart;
+        } else {
+            BinaryIndex index = BinaryIndex.open(indexedDataPath);
+            InvertedIndex invIndex = mode.equals("full") ? index.readInvertedIndex() : null;
+            loadNanos = System.nanoTime() - loadStart;
+
+            long queryStart = System.nanoTime();
+            results = BM25.calculateBM25(queryTokens, index, invIndex, 1000);
+            queryNanos = System.nanoTime() - queryStart;
+        }
+        long totalNanos = System.nanoTime() - start;
+
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("load %8.1f ms  first query %7.1f ms  total %8.1f ms  heap %7.1f MB  (%s results)%n",
+                loadNanos / 1e6, queryNanos / 1e6, totalNanos / 1e6,
+                (runtime.totalMemory() - runtime.freeMemory()) / (1024.0 * 1024.0),
+                results == null ? "no" : Integer.toString(results.size()));
+    }
+
+    private static HashMap<?, ?> readMap(String file) throws IOException, ClassNotFoundException {
+        try (FileInputStream fis = new FileInputStream(file);
+             ObjectInputStream ois = new ObjectInputStream(fis)) {
+            return (HashMap<?, ?>) ois.readObject();
+        }
+    }
+}
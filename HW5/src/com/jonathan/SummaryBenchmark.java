@@ -0,0 +1,222 @@
+package com.jonathan;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+// Times the query biased summaries of the top documents of every query of a queries file, made the way Search
+// used to make them, splitting the text with regexes and ranking every sentence in a PriorityQueue, against
+// SummaryGenerator, and against SummaryGenerator scoring the sentences in sentences.bin if the indexed data has
+// one. Prints the median time per summary of each over a few rounds, and the number of summaries that differ,
+// which should be 0.
+public class SummaryBenchmark {
+    private static final int ROUNDS = 11;
+    private static final int WARM_UP_ROUNDS = 20;
+
+    public static void main(String[] args) throws Exception {
+
+        // Input argument checking
+        if (args.length < 2) {
+            System.out.printf("ERROR: Wrong number of arguments passed in! Expected: 2. Received: %d%n", args.length);
+            System.out.println("First parameter: path to the indexed data");
+            System.out.println("Second parameter: path to the queries file");
+            System.out.println("Optional: --docs=N to summarize the top N documents of each query (default: 10)");
+            System.exit(1);
+        }
+        HashMap<String, String> options = IndexEngine.parseOptions(args, 2, "docs");
+        int numDocs = Integer.parseInt(options.getOrDefault("docs", "10"));
+
+        BinaryIndex index = BinaryIndex.open(args[0]);
+        DocumentCache documents = new DocumentCache(args[0], index, DocumentStore.open(args[0]), 0);
+        List<List<String>> queries = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        List<Integer> docIDs = new ArrayList<>();
+        SentenceStore sentences = SentenceStore.open(args[0], index);
+        long chars = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(args[1]))) {
+            while (br.readLine() != null) {
+                List<String> queryTokens = new ArrayList<>();
+                IndexEngine.tokenize(br.readLine(), queryTokens, false);
+                RankedList results = QueryProcessor.AUTO.calculateBM25(queryTokens, index, numDocs, null);
+                for (int i = 0; i < results.size(); i++) {
+                    String text = documents.get(results.docID(i)).getText();
+                    queries.add(queryTokens);
+                    texts.add(text);
+                    docIDs.add(results.docID(i));
+                    chars += text.length();
+                }
+            }
+        }
+
+        int differences = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            String expected = splitSummary(queries.get(i), texts.get(i));
+            SummaryGenerator generator = new SummaryGenerator(queries.get(i));
+            if (!expected.equals(generator.summarize(texts.get(i)))
+                    || sentences != null && !expected.equals(generator.summarize(texts.get(i), sentences, docIDs.get(i)))) {
+                differences++;
+            }
+        }
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            runSplit(queries, texts);
+            runGenerator(queries, texts, null, docIDs);
+            if (sentences != null) {
+                runGenerator(queries, texts, sentences, docIDs);
+            }
+        }
+
+        double[] splitTimes = new double[ROUNDS];
+        double[] generatorTimes = new double[ROUNDS];
+        double[] sentencesTimes = new double[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            splitTimes[round] = runSplit(queries, texts);
+            generatorTimes[round] = runGenerator(queries, texts, null, docIDs);
+            sentencesTimes[round] = sentences != null ? runGenerator(queries, texts, sentences, docIDs) : 0;
+        }
+        double split = Benchmarks.median(splitTimes) / texts.size() / 1000;
+        double generator = Benchmarks.median(generatorTimes) / texts.size() / 1000;
+        System.out.printf("%d summaries of %.0f chars on average, median of %d rounds%n", texts.size(), (double) chars / Math.max(texts.size(), 1), ROUNDS);
+        System.out.printf("%-18s %12s%n", "", "us/summary");
+        System.out.printf("%-18s %12.2f%n", "split and queue", split);
+        System.out.printf("%-18s %12.2f%n", "SummaryGenerator", generator);
+        if (sentences != null) {
+            System.out.printf("%-18s %12.2f%n", SentenceStore.FILE_NAME, Benchmarks.median(sentencesTimes) / texts.size() / 1000);
+        }
+        System.out.printf("Speedup %.2fx, %d summaries differ%n", split / generator, differences);
+    }
+
+    // Nanoseconds to summarize every text
+    private static long runSplit(List<List<String>> queries, List<String> texts) {
+        long start = System.nanoTime();
+        int length = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            length += splitSummary(queries.get(i), texts.get(i)).length();
+        }
+        if (length < 0) {
+            System.out.println(length);
+        }
+        return System.nanoTime() - start;
+    }
+
+    // A generator per query, as Search keeps one for the documents of a query. Scores the sentences in
+    // sentences if it is not null
+    private static long runGenerator(List<List<String>> queries, List<String> texts, SentenceStore sentences, List<Integer> docIDs) {
+        long start = System.nanoTime();
+        int length = 0;
+        SummaryGenerator generator = null;
+        for (int i = 0; i < texts.size(); i++) {
+            if (i == 0 || queries.get(i) != queries.get(i - 1)) {
+                generator = new SummaryGenerator(queries.get(i));
+            }
+            length += sentences != null
+                    ? generator.summarize(texts.get(i), sentences, docIDs.get(i)).length()
+                    : generator.summarize(texts.get(i)).length();
+        }
+        if (length < 0) {
+            System.out.println(length);
+        }
+        return System.nanoTime() - start;
+    }
+
+    // Create class for each entry in the priority queue, containing a sentence and a score
+    private static class PriorityQueueEntry implements Comparable<PriorityQueueEntry> {
+
+        public PriorityQueueEntry(int score, String sentence) {
+            this._score = score;
+            this._sentence = sentence;
+        }
+
+        private final int _score;
+        private final String _sentence;
+
+
+        public int getScore() {
+            return _score;
+        }
+        public String getSentence() {
+            return _sentence;
+        }
+
+        // Sort the priority queue in descending order
+        @Override
+        public int compareTo(PriorityQueueEntry obj) {
+            return this.getScore() < obj.getScore() ? 1 : -1;
+        }
+    }
+
+    // The summary as Search.determineQueryBiasedSummary made it before SummaryGenerator
+    static String splitSummary(List<String> queryTokens, String text) {
+        String[] sentences = text.split("(?<=[.!?])");
+        PriorityQueue<PriorityQueueEntry> sentencePriority = new PriorityQueue<>();
+
+        int skippedSentences = 0;
+        for (int i = 0; i < sentences.length; i++) {
+            sentences[i] = sentences[i].trim();
+
+            // Skip sentences that have less than 5 words
+            if (sentences[i].split("\\s+").length < 5) {
+                skippedSentences++;
+                continue;
+            }
+            List<String> sentenceTokens = new ArrayList<>();
+            IndexEngine.tokenize(sentences[i], sentenceTokens, false);
+            int l = 0, c = 0, d = 0, k = 0, temp = 0;
+            boolean contiguous = false;
+
+            // Assign scores for first and second non-skipped sentences
+            if ((i-skippedSentences) == 0) {
+                l = 2;
+            } else if ((i-skippedSentences) == 1) {
+                l = 1;
+            }
+
+            // Increment c for the number of query words that are in the sentence
+            for (String queryToken : queryTokens) {
+                c += Collections.frequency(sentenceTokens, queryToken);
+            }
+
+            // Increment d for each unique query term in the sentence
+            Set<String> uniqueQueryTokens = new HashSet<>(queryTokens);
+            for (String uniqueQueryToken : uniqueQueryTokens) {
+                if (sentenceTokens.contains(uniqueQueryToken)) {
+                    d += 1;
+                }
+            }
+
+            // Determine longest contiguous run of query terms in the sentence
+            for (String sentenceToken : sentenceTokens) {
+                if (queryTokens.contains(sentenceToken)) {
+                    temp +=1;
+                    if (!contiguous) {
+                        contiguous = true;
+                    }
+                    k = Math.max(temp, k);
+                } else {
+                    contiguous = false;
+                    temp = 0;
+                }
+            }
+
+            // The score of a sentence is the combination of all the parameters
+            int v = c + d + k + l;
+            sentencePriority.add(new PriorityQueueEntry(v, sentences[i]));
+        }
+
+        // Form summary from the two highest scored sentences
+        int i = 0;
+        StringBuilder summary = new StringBuilder();
+        while (!sentencePriority.isEmpty() && i < 2) {
+            String sentence = sentencePriority.poll().getSentence();
+            summary.append(sentence);
+            summary.append(" ");
+            i++;
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,204 @@
+package com.jonathan;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Builds the query biased summary of Search.determineQueryBiasedSummary in one pass over the text. Each
+// sentence is trimmed, its words counted and its tokens looked up in a hash table of the query terms as its
+// chars are walked by SentenceSplitter, so no String is made for a sentence or a token, and c, d, k and l come
+// out of the same walk. When the indexed data has a sentences.bin, the sentences of a document and the ids of
+// their tokens are read from it instead, and the text is not walked at all.
+//
+// The two best sentences are the two that the PriorityQueue of determineQueryBiasedSummary polls first. Its
+// comparator never says two sentences are equal, so which of the sentences with the same score come out first
+// depends on where they sit in the heap, and the heap is replayed on an int array of sentence numbers. Only
+// the two sentences chosen become Strings. A generator is made once per query and is not thread safe.
+public class SummaryGenerator extends SentenceSplitter {
+
+    // Query term index of each distinct query token, and how many times it is in the query
+    private final TermTable queryTerms = new TermTable();
+    private final String[] distinctTerms;
+    private final int[] queryCounts;
+
+    // Stamp of the last tokenizing pass that found each query term, for d
+    private final int[] lastStamp;
+    private int stamp;
+
+    // Id in sentences of each query term, or -1 if no sentence has it
+    private SentenceStore sentences = null;
+    private int[] sentenceTermIDs = null;
+
+    // Bounds and scores of the sentences that have at least MIN_WORDS words, in text order
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+    private int[] scores = new int[64];
+    private int numSentences;
+
+    // Heap of sentence numbers, ordered as the PriorityQueue of determineQueryBiasedSummary orders them
+    private int[] heap = new int[64];
+    private int heapSize;
+
+    // Scores of the current sentence
+    private int c;
+    private int d;
+    private int k;
+    private int run;
+
+    public SummaryGenerator(List<String> queryTokens) {
+        int[] counts = new int[queryTokens.size()];
+        String[] terms = new String[queryTokens.size()];
+        int numTerms = 0;
+        for (String queryToken : queryTokens) {
+            char[] chars = queryToken.toCharArray();
+            int hash = TermTable.hash(chars, 0, chars.length);
+            int term = queryTerms.get(chars, 0, chars.length, hash);
+            if (term < 0) {
+                term = numTerms++;
+                terms[term] = queryToken;
+                queryTerms.put(chars, 0, chars.length, hash, term);
+            }
+            counts[term]++;
+        }
+        this.distinctTerms = Arrays.copyOf(terms, numTerms);
+        this.queryCounts = Arrays.copyOf(counts, numTerms);
+        this.lastStamp = new int[numTerms];
+    }
+
+    // The summary of the text: its two best sentences, each followed by a space
+    public String summarize(String text) {
+        startDocument();
+        split(text);
+        return summary(text);
+    }
+
+    // The summary of the text of a document, scored from the sentences of the document in sentences. Falls
+    // back to splitting the text if it is not the text the sentences were taken from
+    public String summarize(String text, SentenceStore sentences, int docID) {
+        SentenceStore.Cursor cursor = sentences.sentences(docID);
+        if (cursor.textLength() != text.length()) {
+            return summarize(text);
+        }
+        if (this.sentences != sentences) {
+            this.sentences = sentences;
+            sentenceTermIDs = new int[distinctTerms.length];
+            for (int term = 0; term < distinctTerms.length; term++) {
+                sentenceTermIDs[term] = sentences.termID(distinctTerms[term]);
+            }
+        }
+
+        startDocument();
+        while (cursor.nextSentence()) {
+            startTokens();
+            while (cursor.tokensLeft() > 0) {
+                int termID = cursor.nextToken();
+                int term = sentenceTermIDs.length - 1;
+                while (term >= 0 && sentenceTermIDs[term] != termID) {
+                    term--;
+                }
+                matchTerm(term);
+            }
+            addSentence(cursor.start(), cursor.end());
+        }
+        return summary(text);
+    }
+
+    private void startDocument() {
+        numSentences = 0;
+        heapSize = 0;
+        Arrays.fill(lastStamp, -1);
+        stamp = 0;
+    }
+
+    private String summary(String text) {
+        StringBuilder summary = new StringBuilder();
+        for (int i = 0; i < 2 && heapSize > 0; i++) {
+            int sentence = poll();
+            summary.append(text, starts[sentence], ends[sentence]);
+            summary.append(" ");
+        }
+        return summary.toString();
+    }
+
+    @Override
+    protected void startTokens() {
+        c = 0;
+        d = 0;
+        k = 0;
+        run = 0;
+        stamp++;
+    }
+
+    @Override
+    protected void addToken(char[] chars, int length, int hash) {
+        matchTerm(queryTerms.get(chars, 0, length, hash));
+    }
+
+    // c counts every query token the sentence token matches, d the distinct query terms in the sentence, and k
+    // the longest run of sentence tokens that are query terms. term is -1 for a token that is not one
+    private void matchTerm(int term) {
+        if (term < 0) {
+            run = 0;
+            return;
+        }
+        c += queryCounts[term];
+        if (lastStamp[term] != stamp) {
+            lastStamp[term] = stamp;
+            d++;
+        }
+        k = Math.max(k, ++run);
+    }
+
+    @Override
+    protected void addSentence(int start, int end) {
+        // The first and second sentences that are not skipped score more
+        int l = numSentences == 0 ? 2 : numSentences == 1 ? 1 : 0;
+        if (numSentences == starts.length) {
+            starts = Arrays.copyOf(starts, numSentences * 2);
+            ends = Arrays.copyOf(ends, numSentences * 2);
+            scores = Arrays.copyOf(scores, numSentences * 2);
+        }
+        starts[numSentences] = start;
+        ends[numSentences] = end;
+        scores[numSentences] = c + d + k + l;
+        offer(numSentences++);
+    }
+
+    // PriorityQueue.offer. A sentence moves up past every parent that does not score more than it
+    private void offer(int sentence) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[sentence] < scores[heap[parent]]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = sentence;
+    }
+
+    // PriorityQueue.poll. The last sentence moves down from the top past every child that scores more than it,
+    // taking the right child only if it scores more than the left
+    private int poll() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        int i = 0;
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && scores[heap[child]] < scores[heap[child + 1]]) {
+                child++;
+            }
+            if (scores[last] >= scores[heap[child]]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+}
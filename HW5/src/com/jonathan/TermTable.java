@@ -0,0 +1,121 @@
+package com.jonathan;
+
+import java.util.Arrays;
+
+// Open addressing hash table from a term, given as a slice of a char array, to an int. Keys are copied into
+// one shared char pool, so looking up a term that is already in the table does not create a String.
+public class TermTable {
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    // Entry index + 1 of each slot, 0 when the slot is empty
+    private int[] slots;
+    private int mask;
+
+    private int[] hashes;
+    private int[] keyOffsets;
+    private int[] keyLengths;
+    private int[] values;
+    private int size;
+
+    private char[] keyChars;
+    private int keyCharsUsed;
+
+    public TermTable() {
+        slots = new int[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+        hashes = new int[INITIAL_CAPACITY / 2];
+        keyOffsets = new int[INITIAL_CAPACITY / 2];
+        keyLengths = new int[INITIAL_CAPACITY / 2];
+        values = new int[INITIAL_CAPACITY / 2];
+        keyChars = new char[INITIAL_CAPACITY * 4];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Hash of a key as it would be built up one char at a time with hash = 31 * hash + c
+    public static int hash(char[] key, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + key[i];
+        }
+        return hash;
+    }
+
+    // Returns the value of the key, or -1 if it is not in the table
+    public int get(char[] key, int offset, int length, int hash) {
+        int slot = mix(hash) & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            entry--;
+            if (hashes[entry] == hash && keyEquals(entry, key, offset, length)) {
+                return values[entry];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Add a key that is not in the table yet
+    public void put(char[] key, int offset, int length, int hash, int value) {
+        if (size + 1 > values.length) {
+            grow();
+        }
+        if (keyCharsUsed + length > keyChars.length) {
+            keyChars = Arrays.copyOf(keyChars, Math.max(keyCharsUsed + length, keyChars.length * 2));
+        }
+        System.arraycopy(key, offset, keyChars, keyCharsUsed, length);
+        hashes[size] = hash;
+        keyOffsets[size] = keyCharsUsed;
+        keyLengths[size] = length;
+        values[size] = value;
+        keyCharsUsed += length;
+        insert(size, hash);
+        size++;
+    }
+
+    private boolean keyEquals(int entry, char[] key, int offset, int length) {
+        if (keyLengths[entry] != length) {
+            return false;
+        }
+        int keyOffset = keyOffsets[entry];
+        for (int i = 0; i < length; i++) {
+            if (keyChars[keyOffset + i] != key[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(int entry, int hash) {
+        int slot = mix(hash) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = entry + 1;
+    }
+
+    // Double the number of slots, keeping the table at most half full
+    private void grow() {
+        int capacity = values.length * 2;
+        hashes = Arrays.copyOf(hashes, capacity);
+        keyOffsets = Arrays.copyOf(keyOffsets, capacity);
+        keyLengths = Arrays.copyOf(keyLengths, capacity);
+        values = Arrays.copyOf(values, capacity);
+
+        slots = new int[capacity * 2];
+        mask = slots.length - 1;
+        for (int entry = 0; entry < size; entry++) {
+            insert(entry, hashes[entry]);
+        }
+    }
+
+    // Spread the bits of the polynomial hash so that similar terms do not cluster in neighbouring slots
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+}
@@ -0,0 +1,173 @@
+package com.jonathan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.jonathan.PorterStemmer.stem;
+
+// Fused tokenizing, term id lookup and word counting for IndexEngine. Text is walked once as a char
+// range, lowercased through an ASCII lookup table, and every token is resolved to a term id through a table
+// keyed on its lowercased chars, so no String or boxed Integer is created for a token that was seen before.
+// The term frequencies of the current document are kept in a reusable int array indexed by term id.
+// Produces the same tokens as IndexEngine.tokenize, and a tokenizer is not thread safe.
+public class TermTokenizer {
+
+    // Gives out the term id of a (stemmed) term, adding it to the lexicon if it is new
+    public interface TermResolver {
+        int resolve(String term);
+        String term(int termID);
+    }
+
+    // Lowercased char of each ASCII letter or digit, 0 for every other ASCII char
+    static final char[] ASCII_LOWER = new char[128];
+    static {
+        for (char c = 0; c < 128; c++) {
+            if (Character.isLetterOrDigit(c)) {
+                ASCII_LOWER[c] = Character.toLowerCase(c);
+            }
+        }
+    }
+
+    // The lookup table lowercases one char at a time, which only agrees with String.toLowerCase if the
+    // default locale lowercases ASCII the usual way (it does not in Turkish, for example)
+    static final boolean ASCII_FAST_PATH = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toLowerCase().equals("abcdefghijklmnopqrstuvwxyz");
+
+    private final boolean _stem;
+    private final TermResolver _resolver;
+
+    // Lowercased token, before stemming, to term id
+    private final TermTable surfaceForms = new TermTable();
+    private char[] token = new char[64];
+
+    // Term frequencies of the current document, and the term ids in order of first occurrence
+    private int[] tf = new int[1024];
+    private int[] touched = new int[256];
+    private int numTouched = 0;
+    private int length = 0;
+
+    // Term id of every token of the current document in order, if asked for
+    private int[] sequence = null;
+
+    public TermTokenizer(boolean stem, TermResolver resolver) {
+        this(stem, resolver, false);
+    }
+
+    public TermTokenizer(boolean stem, TermResolver resolver, boolean keepSequence) {
+        this._stem = stem;
+        this._resolver = resolver;
+        if (keepSequence) {
+            sequence = new int[1024];
+        }
+    }
+
+    public TermResolver getResolver() {
+        return _resolver;
+    }
+
+    // Clear the counts of the previous document
+    public void startDocument() {
+        for (int i = 0; i < numTouched; i++) {
+            tf[touched[i]] = 0;
+        }
+        numTouched = 0;
+        length = 0;
+    }
+
+    // Number of tokens in the current document
+    public int length() {
+        return length;
+    }
+
+    // Number of distinct terms in the current document
+    public int numTerms() {
+        return numTouched;
+    }
+
+    // Term id of the i-th distinct term of the current document, in order of first occurrence
+    public int termID(int i) {
+        return touched[i];
+    }
+
+    public int count(int i) {
+        return tf[touched[i]];
+    }
+
+    // Term ids of the tokens of the current document in order, the first length() of them. Null unless the
+    // tokenizer was made to keep them
+    public int[] sequence() {
+        return sequence;
+    }
+
+    // Tokenize chars[start, end) and add its tokens to the current document
+    public void tokenize(char[] chars, int start, int end, boolean ascii) {
+        if (!ascii || !ASCII_FAST_PATH) {
+            tokenizeSlow(new String(chars, start, end - start));
+            return;
+        }
+
+        int tokenLength = 0;
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            char lower = c < 128 ? ASCII_LOWER[c] : 0;
+            if (lower == 0) {
+                if (tokenLength > 0) {
+                    addToken(tokenLength, hash);
+                    tokenLength = 0;
+                    hash = 0;
+                }
+                continue;
+            }
+            if (tokenLength == token.length) {
+                token = Arrays.copyOf(token, token.length * 2);
+            }
+            token[tokenLength++] = lower;
+            hash = 31 * hash + lower;
+        }
+        if (tokenLength > 0) {
+            addToken(tokenLength, hash);
+        }
+    }
+
+    // Text outside of ASCII can change length when lowercased, so it goes through IndexEngine.tokenize
+    private void tokenizeSlow(String text) {
+        List<String> tokens = new ArrayList<>();
+        IndexEngine.tokenize(text, tokens, _stem);
+        for (String term : tokens) {
+            addTerm(_resolver.resolve(term));
+        }
+    }
+
+    private void addToken(int tokenLength, int hash) {
+        int termID = surfaceForms.get(token, 0, tokenLength, hash);
+        if (termID < 0) {
+            String term = new String(token, 0, tokenLength);
+            if (_stem) {
+                term = stem(term);
+            }
+            termID = _resolver.resolve(term);
+            surfaceForms.put(token, 0, tokenLength, hash, termID);
+        }
+        addTerm(termID);
+    }
+
+    private void addTerm(int termID) {
+        if (termID >= tf.length) {
+            tf = Arrays.copyOf(tf, Math.max(termID + 1, tf.length * 2));
+        }
+        if (tf[termID]++ == 0) {
+            if (numTouched == touched.length) {
+                touched = Arrays.copyOf(touched, touched.length * 2);
+            }
+            touched[numTouched++] = termID;
+        }
+        if (sequence != null) {
+            if (length == sequence.length) {
+                sequence = Arrays.copyOf(sequence, sequence.length * 2);
+            }
+            sequence[length] = termID;
+        }
+        length++;
+    }
+}
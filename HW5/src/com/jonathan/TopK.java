@@ -0,0 +1,112 @@
+package com.jonathan;
+
+import java.util.function.IntFunction;
+
+// Keeps the k best scoring documents seen so far in a min-heap of primitive docids and scores, so ranking a
+// query costs O(n log k) instead of sorting every scored document. Documents are ordered the way trec_eval
+// orders a run: by score, then by docno in decreasing order for equal scores, so the ranks written to a run
+// file are the ranks that are evaluated.
+public class TopK {
+    private final int k;
+    private final IntFunction<String> docnos;
+
+    // heap[0] holds the worst of the documents kept
+    private final int[] docIDs;
+    private final double[] scores;
+    private int size = 0;
+
+    // docnos gives the docno of an internal docid, only needed to break ties
+    public TopK(int k, IntFunction<String> docnos) {
+        this.k = k;
+        this.docnos = docnos;
+        this.docIDs = new int[k];
+        this.scores = new double[k];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == k;
+    }
+
+    // Lowest score kept. A document needs at least this score to enter once the heap is full
+    public double minScore() {
+        return size == 0 ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    public void add(int docID, double score) {
+        if (size < k) {
+            docIDs[size] = docID;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (k > 0 && isBetter(docID, score, docIDs[0], scores[0])) {
+            docIDs[0] = docID;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    // The documents kept, best first. Empties the heap
+    public RankedList ranked() {
+        int n = size;
+        int[] rankedDocIDs = new int[n];
+        double[] rankedScores = new double[n];
+        while (size > 0) {
+            // The worst document left goes to the back of what is left of the ranking
+            size--;
+            rankedDocIDs[size] = docIDs[0];
+            rankedScores[size] = scores[0];
+            docIDs[0] = docIDs[size];
+            scores[0] = scores[size];
+            siftDown(0, size);
+        }
+        return new RankedList(rankedDocIDs, rankedScores);
+    }
+
+    private boolean isBetter(int lhsDocID, double lhsScore, int rhsDocID, double rhsScore) {
+        if (lhsScore != rhsScore) {
+            return lhsScore > rhsScore;
+        }
+        return docnos.apply(lhsDocID).compareTo(docnos.apply(rhsDocID)) > 0;
+    }
+
+    private void siftUp(int i) {
+        int docID = docIDs[i];
+        double score = scores[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!isBetter(docIDs[parent], scores[parent], docID, score)) {
+                break;
+            }
+            docIDs[i] = docIDs[parent];
+            scores[i] = scores[parent];
+            i = parent;
+        }
+        docIDs[i] = docID;
+        scores[i] = score;
+    }
+
+    private void siftDown(int i, int n) {
+        int docID = docIDs[i];
+        double score = scores[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) {
+                break;
+            }
+            if (child + 1 < n && isBetter(docIDs[child], scores[child], docIDs[child + 1], scores[child + 1])) {
+                child++;
+            }
+            if (!isBetter(docID, score, docIDs[child], scores[child])) {
+                break;
+            }
+            docIDs[i] = docIDs[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        docIDs[i] = docID;
+        scores[i] = score;
+    }
+}
@@ -0,0 +1,74 @@
+package com.jonathan;
+
+import java.util.List;
+
+import static com.jonathan.PostingsIterator.NO_MORE_DOCS;
+
+// Document at a time BM25 with WAND dynamic pruning (Broder et al., 2003). The postings iterators of the query
+// terms are kept in order of their current docid. Once k documents have been scored, a document can only make
+// the top k if the upper bounds of the terms it may contain add up to at least the lowest score kept, so the
+// first docid at which they do (the pivot) is the next document worth scoring, and every iterator before the
+// pivot skips straight to it. The top k is the same as calculateBM25 gives, since a document is only passed
+// over when it cannot score as high as the documents already kept.
+public class Wand {
+    public static RankedList calculateBM25(List<String> queryTokens, BinaryIndex index, PostingsSource postingsSource, int k, QueryStats stats) {
+        BM25Query query = new BM25Query(queryTokens, index, postingsSource);
+        TopK topK = new TopK(k, index::docno);
+        int numTerms = query.numTerms();
+
+        // Terms in order of the docid their iterator is on
+        int[] order = new int[numTerms];
+        for (int term = 0; term < numTerms; term++) {
+            query.postings(term).nextDoc();
+            order[term] = term;
+        }
+
+        while (true) {
+            sortByDocID(query, order);
+            double threshold = topK.isFull() ? topK.minScore() : Double.NEGATIVE_INFINITY;
+
+            // Find the pivot
+            int pivot = -1;
+            double bound = 0;
+            for (int i = 0; i < numTerms && query.postings(order[i]).docID() != NO_MORE_DOCS; i++) {
+                bound += query.upperBound(order[i]);
+                if (bound >= threshold) {
+                    pivot = i;
+                    break;
+                }
+            }
+            if (pivot < 0) {
+                break;
+            }
+
+            int pivotDoc = query.postings(order[pivot]).docID();
+            if (query.postings(order[0]).docID() == pivotDoc) {
+                // Every iterator up to the pivot is on the pivot document, so it can be scored
+                topK.add(pivotDoc, query.score(pivotDoc, stats));
+                for (int i = 0; i < numTerms && query.postings(order[i]).docID() == pivotDoc; i++) {
+                    query.postings(order[i]).nextDoc();
+                }
+            } else {
+                // None of the documents before the pivot document can make the top k
+                for (int i = 0; i < pivot; i++) {
+                    query.postings(order[i]).advance(pivotDoc);
+                }
+            }
+        }
+        return topK.ranked();
+    }
+
+    // Insertion sort, as queries have few terms and the order changes little between documents
+    static void sortByDocID(BM25Query query, int[] order) {
+        for (int i = 1; i < order.length; i++) {
+            int term = order[i];
+            int docID = query.postings(term).docID();
+            int j = i - 1;
+            while (j >= 0 && query.postings(order[j]).docID() > docID) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = term;
+        }
+    }
+}